@@ -0,0 +1,143 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.Ageable;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.inventory.ItemStack;
+import org.yusaki.lamdispensers.jfr.DispenserEvents;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Harvest mode for hoe dispensers: sweeps an area in front of the dispenser for mature
+ * crops and breaks, optionally replants, and drops them all in one region task.
+ */
+class CropHarvester {
+    private static final int MAX_SIZE = 16;
+
+    // Crop block -> item taken from the drops to replant it
+    private static final Map<Material, Material> CROP_SEEDS = new EnumMap<>(Material.class);
+
+    static {
+        CROP_SEEDS.put(Material.WHEAT, Material.WHEAT_SEEDS);
+        CROP_SEEDS.put(Material.CARROTS, Material.CARROT);
+        CROP_SEEDS.put(Material.POTATOES, Material.POTATO);
+        CROP_SEEDS.put(Material.BEETROOTS, Material.BEETROOT_SEEDS);
+        CROP_SEEDS.put(Material.NETHER_WART, Material.NETHER_WART);
+        CROP_SEEDS.put(Material.COCOA, Material.COCOA_BEANS);
+    }
+
+    private final LamDispensers plugin;
+    private final Set<Location> activeSweeps = ConcurrentHashMap.newKeySet();
+    private volatile boolean enabled;
+    private volatile int width;
+    private volatile int depth;
+    private volatile boolean replant;
+
+    CropHarvester(LamDispensers plugin) {
+        this.plugin = plugin;
+    }
+
+    void reloadSettings() {
+        enabled = plugin.getConfig().getBoolean("mining.harvest.enabled", true);
+        width = Math.max(1, Math.min(plugin.getConfig().getInt("mining.harvest.width", 3), MAX_SIZE));
+        depth = Math.max(1, Math.min(plugin.getConfig().getInt("mining.harvest.depth", 5), MAX_SIZE));
+        replant = plugin.getConfig().getBoolean("mining.harvest.replant", true);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a sweep for the next tick.
+     *
+     * @return false if the dispenser already has a sweep queued this tick
+     */
+    boolean scheduleSweep(Block dispenserBlock, BlockFace facing, ItemStack tool) {
+        Location loc = dispenserBlock.getLocation();
+        if (!activeSweeps.add(loc)) {
+            DispenserEvents.admissionRejected(loc, tool.getType(), null, "harvest-busy");
+            plugin.getMetrics().dispenseRejected(loc, "harvest-busy");
+            return false;
+        }
+
+        plugin.getTaskScheduler().run(loc, () -> {
+            try {
+                sweep(dispenserBlock, facing, tool);
+            } finally {
+                activeSweeps.remove(loc);
+            }
+        });
+        return true;
+    }
+
+    private void sweep(Block dispenserBlock, BlockFace facing, ItemStack tool) {
+        World world = dispenserBlock.getWorld();
+        Block origin = dispenserBlock.getRelative(facing);
+        int half = width / 2;
+
+        // Facing up or down sweeps a square centred on the block in front, otherwise rows run away from the dispenser
+        boolean vertical = facing.getModY() != 0;
+        int forwardX = vertical ? 0 : facing.getModX();
+        int forwardZ = vertical ? 1 : facing.getModZ();
+        int lateralX = Math.abs(forwardZ);
+        int lateralZ = Math.abs(forwardX);
+        int firstRow = vertical ? -half : 0;
+        int lastRow = vertical ? half : depth - 1;
+
+        Map<Material, Integer> drops = new EnumMap<>(Material.class);
+        int harvested = 0;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = -half; column <= half; column++) {
+                int x = origin.getX() + forwardX * row + lateralX * column;
+                int z = origin.getZ() + forwardZ * row + lateralZ * column;
+                if (!world.isChunkLoaded(x >> 4, z >> 4)) continue;
+
+                Block block = world.getBlockAt(x, origin.getY(), z);
+                if (!plugin.getTaskScheduler().isOwnedByCurrentThread(block.getLocation())) continue;
+
+                Material seed = CROP_SEEDS.get(block.getType());
+                if (seed == null) continue;
+
+                BlockData data = block.getBlockData();
+                if (!(data instanceof Ageable ageable) || ageable.getAge() < ageable.getMaximumAge()) continue;
+
+                for (ItemStack drop : block.getDrops(tool)) {
+                    drops.merge(drop.getType(), drop.getAmount(), Integer::sum);
+                }
+
+                if (replant && drops.containsKey(seed)) {
+                    drops.computeIfPresent(seed, (material, amount) -> amount > 1 ? amount - 1 : null);
+                    ageable.setAge(0);
+                    block.setBlockData(ageable, false);
+                } else {
+                    block.setType(Material.AIR);
+                }
+                harvested++;
+            }
+        }
+
+        if (harvested == 0) return;
+
+        Location dropLocation = origin.getLocation().add(0.5, 0.5, 0.5);
+        for (Map.Entry<Material, Integer> entry : drops.entrySet()) {
+            int remaining = entry.getValue();
+            int stackSize = entry.getKey().getMaxStackSize();
+            while (remaining > 0) {
+                int amount = Math.min(remaining, stackSize);
+                world.dropItemNaturally(dropLocation, new ItemStack(entry.getKey(), amount));
+                remaining -= amount;
+            }
+        }
+        plugin.getMetrics().cropsHarvested(dispenserBlock.getLocation(), harvested);
+    }
+}
@@ -0,0 +1,390 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Directory of the dispensers the plugin has handled, kept per chunk in the chunk's
+ * persistent data. It is read back when a chunk loads, so the plugin knows a farm
+ * before its first pulse and capacity can be planned per region.
+ *
+ * <p>Each dispenser is packed into one long: local x (4 bits), local z (4), y (16),
+ * facing (3) and a mode bit per {@link Mode}. A dispenser holding both tools and blocks
+ * keeps both bits, so alternating pulses leave the stored entry alone.
+ *
+ * <p>Mining dispensers also keep their last {@link ToolRanking} in memory. It is ranked
+ * when their chunk loads and after every full scan, and lets a pulse take the tool without
+ * scanning the inventory again.
+ */
+public class DispenserDirectory implements Listener {
+    private static final long CHUNK_ENTRY_BYTES = 96;
+    private static final long RANKING_BYTES = 32;
+    private static final int POSITION_MASK = 0xFFFFFF;
+    private static final int MODE_SHIFT = 27;
+    private static final long MODE_MASK = 3L << MODE_SHIFT;
+
+    // Persisted by index, only append
+    private static final BlockFace[] FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
+
+    // Persisted as bit (MODE_SHIFT + ordinal), only append
+    public enum Mode {
+        MINING, PLACEMENT;
+
+        long bit() {
+            return 1L << (MODE_SHIFT + ordinal());
+        }
+    }
+
+    /**
+     * The slot a mining dispenser's best tool was found in, for one target block under one
+     * set of tool rules. Only valid while the dispenser's inventory is unchanged.
+     */
+    public record ToolRanking(int slot, Material tool, Material target, ToolRules rules) {
+    }
+
+    record RegionCount(String world, int regionX, int regionZ, int dispensers, int mining, int placement) {
+    }
+
+    private record ChunkKey(UUID world, int x, int z) {
+    }
+
+    private final LamDispensers plugin;
+    private final NamespacedKey dataKey;
+    private final Map<ChunkKey, ChunkEntries> chunks = new ConcurrentHashMap<>();
+
+    public DispenserDirectory(LamDispensers plugin) {
+        this.plugin = plugin;
+        this.dataKey = new NamespacedKey(plugin, "dispensers");
+    }
+
+    public void recordMining(Block dispenserBlock, BlockFace facing) {
+        record(dispenserBlock, pack(dispenserBlock, facing, Mode.MINING));
+    }
+
+    public void recordPlacement(Block dispenserBlock, BlockFace facing) {
+        record(dispenserBlock, pack(dispenserBlock, facing, Mode.PLACEMENT));
+    }
+
+    /**
+     * The last ranking of a known dispenser's tools, null if it has none or isn't known.
+     */
+    public ToolRanking getToolRanking(Block dispenserBlock) {
+        ChunkEntries entries = chunks.get(keyOf(dispenserBlock));
+        return entries != null ? entries.ranking(positionOf(dispenserBlock)) : null;
+    }
+
+    /**
+     * Keeps the ranking for a known dispenser, a null ranking drops it. Unknown dispensers are ignored.
+     */
+    public void setToolRanking(Block dispenserBlock, ToolRanking ranking) {
+        ChunkEntries entries = chunks.get(keyOf(dispenserBlock));
+        if (entries != null) {
+            entries.rank(positionOf(dispenserBlock), ranking);
+        }
+    }
+
+    private void record(Block dispenserBlock, long entry) {
+        // The chunk's stored entries are only read and written by the thread that owns it
+        if (!plugin.getTaskScheduler().isOwnedByCurrentThread(dispenserBlock.getLocation())) {
+            plugin.getTaskScheduler().run(dispenserBlock.getLocation(), () -> record(dispenserBlock, entry));
+            return;
+        }
+
+        ChunkEntries entries = chunks.get(keyOf(dispenserBlock));
+        if (entries == null) {
+            // Not read yet, e.g. loaded before the plugin enabled. Merge into what is stored, not over it.
+            entries = load(dispenserBlock.getChunk(), true);
+        }
+        // Repeat pulses of a known dispenser end here without touching the chunk
+        if (entries.put(entry)) {
+            write(dispenserBlock.getChunk(), entries.toArray());
+        }
+    }
+
+    private void write(Chunk chunk, long[] entries) {
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        if (entries.length == 0) {
+            container.remove(dataKey);
+        } else {
+            container.set(dataKey, PersistentDataType.LONG_ARRAY, entries);
+        }
+    }
+
+    // Prunes and rewrites the stored data, which MONITOR listeners must not do
+    @EventHandler(priority = EventPriority.NORMAL)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        prewarm(event.getChunk(), load(event.getChunk(), false));
+    }
+
+    /**
+     * Reads the chunks that were loaded before the plugin enabled, such as the spawn chunks
+     * or everything after a reload. They never fire a load event for this directory.
+     */
+    public void loadLoadedChunks() {
+        for (World world : plugin.getServer().getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                plugin.getTaskScheduler().run(new Location(world, chunk.getX() << 4, 0, chunk.getZ() << 4), () -> {
+                    if (chunk.isLoaded()) {
+                        prewarm(chunk, load(chunk, false));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Reads the chunk's stored entries into the directory, unless it already holds them.
+     * Has to run on the thread that owns the chunk.
+     *
+     * @param keepEmpty whether a chunk without live entries still gets an (empty) set of entries
+     * @return the chunk's entries, null if it has none and {@code keepEmpty} is false
+     */
+    private ChunkEntries load(Chunk chunk, boolean keepEmpty) {
+        ChunkKey key = new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        ChunkEntries known = chunks.get(key);
+        if (known != null) return known;
+
+        long[] stored = chunk.getPersistentDataContainer().get(dataKey, PersistentDataType.LONG_ARRAY);
+        long[] live = new long[0];
+        if (stored != null) {
+            // Drop dispensers that were removed without a block break event, e.g. by explosions or world edits
+            live = Arrays.stream(stored)
+                    .filter(entry -> chunk.getBlock(localX(entry), y(entry), localZ(entry)).getType() == Material.DISPENSER)
+                    .toArray();
+            if (live.length != stored.length) {
+                write(chunk, live);
+            }
+        }
+        if (live.length == 0 && !keepEmpty) return null;
+
+        ChunkEntries entries = new ChunkEntries(live);
+        chunks.put(key, entries);
+        return entries;
+    }
+
+    /**
+     * Ranks the tools of the chunk's mining dispensers, so their first pulse finds a ranking.
+     */
+    private void prewarm(Chunk chunk, ChunkEntries entries) {
+        DispenserMiningHandler mining = plugin.getMiningHandler();
+        if (entries == null || mining == null) return;
+
+        for (long entry : entries.toArray()) {
+            if ((entry & Mode.MINING.bit()) == 0) continue;
+            Block dispenserBlock = chunk.getBlock(localX(entry), y(entry), localZ(entry));
+            entries.rank((int) entry & POSITION_MASK, mining.rankTools(dispenserBlock, facing(entry)));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        // Every change was already written through, so there is nothing to save here
+        Chunk chunk = event.getChunk();
+        chunks.remove(new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        if (block.getType() != Material.DISPENSER) return;
+
+        ChunkEntries entries = chunks.get(keyOf(block));
+        if (entries != null && entries.remove(positionOf(block))) {
+            write(block.getChunk(), entries.toArray());
+        }
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public int getDispenserCount(Mode mode) {
+        int count = 0;
+        for (ChunkEntries entries : chunks.values()) {
+            for (long entry : entries.toArray()) {
+                if ((entry & mode.bit()) != 0) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Known dispensers per region file (32x32 chunks), busiest first.
+     */
+    List<RegionCount> countByRegion() {
+        Map<UUID, String> worldNames = new HashMap<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            worldNames.put(world.getUID(), world.getName());
+        }
+
+        Map<ChunkKey, int[]> counts = new HashMap<>();
+        chunks.forEach((key, entries) -> {
+            int[] count = counts.computeIfAbsent(new ChunkKey(key.world(), key.x() >> 5, key.z() >> 5), (k) -> new int[3]);
+            for (long entry : entries.toArray()) {
+                count[0]++;
+                if ((entry & Mode.MINING.bit()) != 0) count[1]++;
+                if ((entry & Mode.PLACEMENT.bit()) != 0) count[2]++;
+            }
+        });
+
+        List<RegionCount> regions = new ArrayList<>();
+        counts.forEach((key, count) -> regions.add(new RegionCount(worldNames.getOrDefault(key.world(), "?"),
+                key.x(), key.z(), count[0], count[1], count[2])));
+        regions.sort(Comparator.comparingInt(RegionCount::dispensers).reversed()
+                .thenComparing(RegionCount::world)
+                .thenComparingInt(RegionCount::regionX)
+                .thenComparingInt(RegionCount::regionZ));
+        return regions;
+    }
+
+    public long estimateRetainedBytes() {
+        long bytes = 0;
+        for (ChunkEntries entries : chunks.values()) {
+            bytes += CHUNK_ENTRY_BYTES + entries.size() * 8L + entries.rankedCount() * RANKING_BYTES;
+        }
+        return bytes;
+    }
+
+    private static ChunkKey keyOf(Block block) {
+        return new ChunkKey(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private static int positionOf(Block block) {
+        return (block.getX() & 15) | (block.getZ() & 15) << 4 | (block.getY() & 0xFFFF) << 8;
+    }
+
+    private static long pack(Block block, BlockFace facing, Mode mode) {
+        int face = Math.max(0, Arrays.asList(FACES).indexOf(facing));
+        return positionOf(block)
+                | (long) face << 24
+                | mode.bit();
+    }
+
+    private static int localX(long entry) {
+        return (int) (entry & 15);
+    }
+
+    private static int localZ(long entry) {
+        return (int) (entry >> 4 & 15);
+    }
+
+    private static int y(long entry) {
+        return (short) (entry >> 8 & 0xFFFF);
+    }
+
+    private static BlockFace facing(long entry) {
+        return FACES[(int) (entry >> 24 & 7) % FACES.length];
+    }
+
+    /**
+     * Entries of one chunk. Chunks rarely hold more than a handful of dispensers, so a
+     * flat array with a linear search beats a map here.
+     */
+    private static final class ChunkEntries {
+        private long[] entries;
+        // Parallel to entries, never persisted
+        private ToolRanking[] rankings;
+
+        ChunkEntries(long[] entries) {
+            this.entries = entries;
+            this.rankings = new ToolRanking[entries.length];
+        }
+
+        /**
+         * Adds the entry, or merges its mode into the stored one at the same position.
+         *
+         * @return true if the stored entries changed
+         */
+        synchronized boolean put(long entry) {
+            int position = (int) entry & POSITION_MASK;
+            for (int i = 0; i < entries.length; i++) {
+                if (((int) entries[i] & POSITION_MASK) == position) {
+                    long merged = entry | (entries[i] & MODE_MASK);
+                    if (entries[i] == merged) return false;
+                    entries[i] = merged;
+                    return true;
+                }
+            }
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+            rankings = Arrays.copyOf(rankings, entries.length);
+            return true;
+        }
+
+        synchronized boolean remove(int position) {
+            for (int i = 0; i < entries.length; i++) {
+                if (((int) entries[i] & POSITION_MASK) == position) {
+                    long[] shrunk = new long[entries.length - 1];
+                    System.arraycopy(entries, 0, shrunk, 0, i);
+                    System.arraycopy(entries, i + 1, shrunk, i, entries.length - i - 1);
+                    ToolRanking[] shrunkRankings = new ToolRanking[shrunk.length];
+                    System.arraycopy(rankings, 0, shrunkRankings, 0, i);
+                    System.arraycopy(rankings, i + 1, shrunkRankings, i, rankings.length - i - 1);
+                    entries = shrunk;
+                    rankings = shrunkRankings;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized ToolRanking ranking(int position) {
+            int index = indexOf(position);
+            return index >= 0 ? rankings[index] : null;
+        }
+
+        synchronized void rank(int position, ToolRanking ranking) {
+            int index = indexOf(position);
+            if (index >= 0) {
+                rankings[index] = ranking;
+            }
+        }
+
+        synchronized int rankedCount() {
+            int count = 0;
+            for (ToolRanking ranking : rankings) {
+                if (ranking != null) count++;
+            }
+            return count;
+        }
+
+        private int indexOf(int position) {
+            for (int i = 0; i < entries.length; i++) {
+                if (((int) entries[i] & POSITION_MASK) == position) return i;
+            }
+            return -1;
+        }
+
+        synchronized long[] toArray() {
+            return entries.clone();
+        }
+
+        synchronized int size() {
+            return entries.length;
+        }
+    }
+}
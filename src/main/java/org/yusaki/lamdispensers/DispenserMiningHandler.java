@@ -8,14 +8,24 @@ import org.bukkit.block.BlockFace;
 import org.bukkit.block.Dispenser;
 import org.bukkit.block.data.Directional;
 import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockDispenseEvent;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.yusaki.lamdispensers.jfr.DispenseHandledEvent;
+import org.yusaki.lamdispensers.jfr.DispenserEvents;
+import org.yusaki.lamdispensers.metrics.AllocationTracker;
+import org.yusaki.lamdispensers.replay.DispenseRecorder;
+
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -24,12 +34,40 @@ import java.util.Set;
 import java.util.ArrayList;
 
 public class DispenserMiningHandler implements Listener {
+    private static final long LOCATION_ENTRY_BYTES = 96;
+    private static final long TOOL_KEY_ENTRY_BYTES = 72;
+    // Crack animations go to players within 32 blocks, independent of the fast-forward threshold
+    private static final double ANIMATION_RANGE_SQUARED = 32 * 32;
+    // Long breaks spread their viewer checks out instead of waking up more often than the cosmetics would
+    private static final int MAX_VIEWER_CHECKS = 4;
+
     private final LamDispensers plugin;
     private final Set<Location> activeMiningOperations = Collections.synchronizedSet(new HashSet<>());
     private final Set<String> activeDispenserTools = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean fastForwardEnabled;
+    private volatile double viewDistanceSquared;
+    private volatile int viewerCheckInterval;
+    private final CropHarvester cropHarvester;
+    private final DispenserStatusSignal statusSignal;
 
     public DispenserMiningHandler(LamDispensers plugin) {
         this.plugin = plugin;
+        this.cropHarvester = new CropHarvester(plugin);
+        this.statusSignal = new DispenserStatusSignal(plugin);
+        reloadSettings();
+    }
+
+    /**
+     * Re-reads the config settings. Running operations keep going and pick up the new
+     * values at their next step.
+     */
+    public void reloadSettings() {
+        fastForwardEnabled = plugin.getConfig().getBoolean("mining.fast-forward.enabled", true);
+        double viewDistance = plugin.getConfig().getDouble("mining.fast-forward.view-distance", 32.0);
+        viewDistanceSquared = viewDistance * viewDistance;
+        viewerCheckInterval = Math.max(1, plugin.getConfig().getInt("mining.fast-forward.check-interval", 20));
+        cropHarvester.reloadSettings();
+        statusSignal.reloadSettings();
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -44,79 +82,198 @@ public class DispenserMiningHandler implements Listener {
         
         // Cancel event early to prevent item ejection
         event.setCancelled(true);
-        
+
+        AllocationTracker allocations = plugin.getMetrics().getMiningAllocations();
+        long allocatedBefore = allocations.begin();
+        plugin.getMetrics().dispenseHandled(dispenserBlock.getLocation(), "mining");
+        DispenseHandledEvent handledEvent = new DispenseHandledEvent();
+        handledEvent.begin();
+        try {
+            scheduleMining(event, dispenserBlock);
+        } finally {
+            allocations.end(allocatedBefore);
+            handledEvent.end();
+            if (handledEvent.shouldCommit()) {
+                handledEvent.setPosition(dispenserBlock.getLocation());
+                handledEvent.handler = "mining";
+                handledEvent.item = dispensedItem.getType().name();
+                handledEvent.commit();
+            }
+        }
+    }
+
+    private void scheduleMining(BlockDispenseEvent event, Block dispenserBlock) {
         BlockFace facing = ((Directional) dispenserBlock.getBlockData()).getFacing();
         Block targetBlock = dispenserBlock.getRelative(facing);
         
+        ItemStack dispensedItem = event.getItem();
+        Material itemType = dispensedItem.getType();
+        
+        // Only read the target once its chunk is known to be loaded, reading it would load it
+        Material targetType = targetBlock.getWorld().isChunkLoaded(targetBlock.getX() >> 4, targetBlock.getZ() >> 4)
+                ? targetBlock.getType() : null;
+        DispenseRecorder.Outcome outcome = MiningAdmission.admitPulse(plugin.getToolRules(),
+                cropHarvester.isEnabled(), itemType, targetType);
+        plugin.getDispenserDirectory().recordMining(dispenserBlock, facing);
+        
+        if (outcome == DispenseRecorder.Outcome.HARVEST_STARTED) {
+            // Recorded once the harvester has admitted or refused the sweep
+            if (!cropHarvester.scheduleSweep(dispenserBlock, facing, dispensedItem.clone())) {
+                outcome = DispenseRecorder.Outcome.HARVEST_BUSY;
+            }
+            recordDispense(dispenserBlock, facing, dispensedItem, targetType, outcome);
+            return;
+        }
+        
         // Return after cancelling if there's no block to mine
-        if (targetBlock.getType().isAir()) return;
+        if (outcome == DispenseRecorder.Outcome.NO_TARGET) {
+            recordDispense(dispenserBlock, facing, dispensedItem, targetType, outcome);
+            statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.IDLE);
+            return;
+        }
         
-        // Check if chunk is loaded
-        if (!targetBlock.getChunk().isLoaded()) {
-            event.setCancelled(true);
+        if (outcome == DispenseRecorder.Outcome.CHUNK_UNLOADED) {
+            recordDispense(dispenserBlock, facing, dispensedItem, null, outcome);
+            recordRejected(targetBlock.getLocation(), itemType, null, "chunk-unloaded");
+            statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.THROTTLED);
             return;
         }
         
-        plugin.getServer().getRegionScheduler().run(plugin, targetBlock.getLocation(), (task) -> {
+        if (!activeMiningOperations.contains(targetBlock.getLocation())) {
+            statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.QUEUED);
+        }
+        plugin.getTaskScheduler().run(targetBlock.getLocation(), () -> {
+            AllocationTracker allocations = plugin.getMetrics().getMiningAllocations();
+            long allocatedBefore = allocations.begin();
             try {
                 // Recheck if chunk is still loaded
                 if (!targetBlock.getChunk().isLoaded()) {
-                    cleanupTracking(targetBlock.getLocation(), dispenserBlock.getLocation(), event.getItem());
+                    cleanupTracking(targetBlock.getLocation(), dispenserBlock.getLocation(), dispensedItem);
                     return;
                 }
 
                 Dispenser dispenser = (Dispenser) dispenserBlock.getState();
                 Location targetLoc = targetBlock.getLocation();
-                
-                if (activeMiningOperations.contains(targetLoc)) {
+                Material currentType = targetBlock.getType();
+                String toolKeyPrefix = dispenserBlock.getLocation().toString() + ":";
+
+                MiningAdmission.Selection selection = selectTool(dispenserBlock, dispenser, currentType,
+                        activeMiningOperations.contains(targetLoc), toolKeyPrefix);
+                recordDispense(dispenserBlock, facing, dispensedItem, currentType, selection.outcome());
+
+                if (selection.outcome() == DispenseRecorder.Outcome.TARGET_BUSY) {
+                    recordRejected(targetLoc, itemType, currentType, "target-busy");
+                    statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.THROTTLED);
                     return;
                 }
 
-                // Find best tool asynchronously
-                ItemStack bestTool = findBestTool(dispenser, targetBlock);
-                if (bestTool == null) return;
+                ItemStack bestTool = selection.slot() >= 0 ? dispenser.getInventory().getItem(selection.slot()) : null;
+                if (selection.outcome() == DispenseRecorder.Outcome.NO_TOOL) {
+                    recordRejected(targetLoc, itemType, currentType, "no-tool");
+                    statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.OUT_OF_TOOLS);
+                    return;
+                }
 
-                String dispenserToolKey = dispenserBlock.getLocation().toString() + ":" + bestTool.getType().name();
-                if (activeDispenserTools.contains(dispenserToolKey)) {
+                if (selection.outcome() == DispenseRecorder.Outcome.TOOL_BUSY) {
+                    recordRejected(targetLoc, itemType, currentType, "tool-busy");
+                    statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.THROTTLED);
                     return;
                 }
 
                 activeMiningOperations.add(targetLoc);
-                activeDispenserTools.add(dispenserToolKey);
+                activeDispenserTools.add(toolKeyPrefix + bestTool.getType().name());
+                statusSignal.update(dispenserBlock, DispenserStatusSignal.Status.MINING);
                 startMining(dispenser, bestTool, targetBlock);
                 
             } catch (Exception e) {
                 plugin.getLogger().warning("Error in dispenser mining: " + e.getMessage());
                 e.printStackTrace();
                 // Cleanup on error
-                cleanupTracking(targetBlock.getLocation(), dispenserBlock.getLocation(), event.getItem());
+                cleanupTracking(targetBlock.getLocation(), dispenserBlock.getLocation(), dispensedItem);
+            } finally {
+                allocations.end(allocatedBefore);
             }
         });
     }
 
-    private ItemStack findBestTool(Dispenser dispenser, Block targetBlock) {
+    /**
+     * Picks the tool for a pulse. The ranking left in the directory by an earlier pulse or the
+     * chunk load is taken as long as it fits, which saves the inventory scan; otherwise all
+     * tools are ranked again and the result is kept for the next pulse.
+     */
+    private MiningAdmission.Selection selectTool(Block dispenserBlock, Dispenser dispenser, Material target,
+                                                 boolean targetBusy, String toolKeyPrefix) {
+        DispenserDirectory directory = plugin.getDispenserDirectory();
+        ToolRules rules = plugin.getToolRules();
+
+        DispenserDirectory.ToolRanking ranking = directory.getToolRanking(dispenserBlock);
+        if (!targetBusy && ranking != null && ranking.target() == target && ranking.rules() == rules
+                && !activeDispenserTools.contains(toolKeyPrefix + ranking.tool().name())) {
+            ItemStack ranked = dispenser.getInventory().getItem(ranking.slot());
+            if (ranked != null && ranked.getType() == ranking.tool()) {
+                return new MiningAdmission.Selection(DispenseRecorder.Outcome.MINING_STARTED, ranking.slot());
+            }
+        }
+
         ItemStack[] contents = dispenser.getInventory().getContents();
-        ItemStack bestTool = null;
-        float bestSpeed = -1;
-        
-        for (ItemStack item : contents) {
-            if (item == null || !isTool(item.getType()) || !canMineBlock(item, targetBlock)) {
-                continue;
+        boolean[] sawBusy = new boolean[1];
+        MiningAdmission.Selection selection = MiningAdmission.selectTool(rules, target, targetBusy, toolsOf(contents),
+                (tool) -> {
+                    boolean busy = activeDispenserTools.contains(toolKeyPrefix + tool.name());
+                    sawBusy[0] |= busy;
+                    return busy;
+                });
+        // A pick made around busy tools isn't the best one once they are free again
+        if (selection.slot() >= 0 && !sawBusy[0]) {
+            directory.setToolRanking(dispenserBlock, new DispenserDirectory.ToolRanking(selection.slot(),
+                    contents[selection.slot()].getType(), target, rules));
+        }
+        return selection;
+    }
+
+    /**
+     * Ranks the tools of a mining dispenser against the block in front of it, as its next pulse
+     * would with nothing busy. Null if the block is out of this thread's reach or no tool fits.
+     * Has to run on the dispenser's thread.
+     */
+    DispenserDirectory.ToolRanking rankTools(Block dispenserBlock, BlockFace facing) {
+        Block targetBlock = dispenserBlock.getRelative(facing);
+        if (!targetBlock.getWorld().isChunkLoaded(targetBlock.getX() >> 4, targetBlock.getZ() >> 4)
+                || !plugin.getTaskScheduler().isOwnedByCurrentThread(targetBlock.getLocation())) return null;
+        if (!(dispenserBlock.getState() instanceof Dispenser dispenser)) return null;
+
+        ToolRules rules = plugin.getToolRules();
+        Material target = targetBlock.getType();
+        ItemStack[] contents = dispenser.getInventory().getContents();
+        MiningAdmission.Selection selection = MiningAdmission.selectTool(rules, target, false, toolsOf(contents),
+                (tool) -> false);
+        return selection.slot() >= 0
+                ? new DispenserDirectory.ToolRanking(selection.slot(), contents[selection.slot()].getType(), target, rules)
+                : null;
+    }
+
+    private static MiningAdmission.Tools toolsOf(ItemStack[] contents) {
+        return new MiningAdmission.Tools() {
+            @Override
+            public int size() {
+                return contents.length;
             }
-            
-            String dispenserToolKey = dispenser.getLocation().toString() + ":" + item.getType().name();
-            if (activeDispenserTools.contains(dispenserToolKey)) {
-                continue;
+
+            @Override
+            public Material type(int slot) {
+                return contents[slot] != null ? contents[slot].getType() : null;
             }
-            
-            float miningSpeed = calculateToolEfficiency(item, targetBlock);
-            if (miningSpeed > bestSpeed) {
-                bestSpeed = miningSpeed;
-                bestTool = item;
+
+            @Override
+            public int efficiencyLevel(int slot) {
+                return contents[slot].getEnchantmentLevel(Enchantment.DIG_SPEED);
             }
-        }
-        
-        return bestTool;
+
+            @Override
+            public int damage(int slot) {
+                return contents[slot].getItemMeta() instanceof Damageable meta ? meta.getDamage() : 0;
+            }
+        };
     }
 
     private void startMining(Dispenser dispenser, ItemStack tool, Block targetBlock) {
@@ -131,65 +288,145 @@ public class DispenserMiningHandler implements Listener {
         }
         
         float miningTicks = calculateMiningTicks(tool, targetBlock);
+        ToolWear wear = ToolWear.lease(tool);
+        long startNanos = System.nanoTime();
+        DispenserEvents.miningStarted(loc, tool.getType(), originalType, (long) (miningTicks * 1000));
+        plugin.getMetrics().miningStarted(loc);
         
         if (miningTicks <= 0.05f) {
-            plugin.getServer().getRegionScheduler().run(plugin, loc, (task) -> {
+            plugin.getTaskScheduler().run(loc, () -> {
                 if (!isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
+                    recordFinished(loc, tool.getType(), originalType, false, "invalidated", startNanos);
                     cleanupTracking(loc, dispenser.getLocation(), tool);
                     return;
                 }
-                performInstantMining(dispenser, tool, targetBlock);
+                performInstantMining(dispenser, tool, targetBlock, wear);
+                recordFinished(loc, tool.getType(), originalType, true, "broken", startNanos);
                 cleanupTracking(loc, dispenser.getLocation(), tool);
             });
             return;
         }
 
-        int animationTicks = Math.max((int) (miningTicks * 20), 2);
+        int animationTicks = MiningAdmission.animationTicks(miningTicks);
         
-        plugin.getServer().getRegionScheduler().run(plugin, loc, (task) -> {
+        plugin.getTaskScheduler().run(loc, () -> {
             if (!isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
+                recordFinished(loc, tool.getType(), originalType, false, "invalidated", startNanos);
                 cleanupTracking(loc, dispenser.getLocation(), tool);
                 return;
             }
             
-            // Calculate number of animation steps (9 steps total, from 0.1 to 0.9)
-            int steps = 9;
-            int stepInterval = Math.max(1, animationTicks / steps);
-            
-            // Start with initial damage
-            showMiningAnimation(targetBlock, 0.1f);
-            
-            // Schedule animation updates
-            for (int i = 2; i <= steps; i++) {
-                final float progress = i / (float) steps;
-                plugin.getServer().getRegionScheduler().runDelayed(plugin, loc, (animTask) -> {
-                    if (isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
-                        showMiningAnimation(targetBlock, progress);
-                    }
-                }, stepInterval * (i - 1));
-            }
-            
             // Schedule the block break
-            scheduleBlockBreak(loc, dispenser, tool, targetBlock, originalType, animationTicks);
-            
-            // Play digging sound periodically
-            int soundInterval = Math.max(1, animationTicks / 4);
-            for (int i = 1; i <= 4; i++) {
-                final int stage = i;
-                plugin.getServer().getRegionScheduler().runDelayed(plugin, loc, (soundTask) -> {
-                    if (isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
-                        targetBlock.getWorld().playSound(
-                            loc,
-                            targetBlock.getBlockData().getSoundGroup().getHitSound(),
-                            1.0f,
-                            0.8f
-                        );
-                    }
-                }, soundInterval * i);
+            scheduleBlockBreak(loc, dispenser, tool, wear, targetBlock, originalType, animationTicks, startNanos);
+
+            if (fastForwardEnabled && !hasViewers(targetBlock)) {
+                // Nobody can see the block, skip the cosmetics and only wake up now and then to look for viewers
+                scheduleViewerCheck(loc, targetBlock, originalType, dispenser, originalTool, animationTicks, 0);
+            } else {
+                scheduleCosmetics(loc, targetBlock, originalType, dispenser, originalTool, animationTicks, 0);
             }
         });
     }
 
+    /**
+     * Schedules the crack stages and digging sounds that are still due after {@code fromTick}
+     * ticks of an operation lasting {@code animationTicks}.
+     */
+    private void scheduleCosmetics(Location loc, Block targetBlock, Material originalType,
+                                   Dispenser dispenser, ItemStack originalTool, int animationTicks, int fromTick) {
+        // Calculate number of animation steps (9 steps total, from 0.1 to 0.9)
+        int steps = 9;
+        int stepInterval = Math.max(1, animationTicks / steps);
+
+        // Start with the damage reached so far
+        int reachedStep = Math.min(steps, fromTick / stepInterval + 1);
+        showMiningAnimation(targetBlock, reachedStep == 1 ? 0.1f : reachedStep / (float) steps);
+
+        // Schedule animation updates
+        for (int i = reachedStep + 1; i <= steps; i++) {
+            final float progress = i / (float) steps;
+            plugin.getTaskScheduler().runDelayed(loc, () -> {
+                if (isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
+                    showMiningAnimation(targetBlock, progress);
+                }
+            }, stepInterval * (i - 1) - fromTick);
+        }
+
+        // Play digging sound periodically
+        int soundInterval = Math.max(1, animationTicks / 4);
+        for (int i = 1; i <= 4; i++) {
+            int soundTick = soundInterval * i;
+            if (soundTick <= fromTick) continue;
+            plugin.getTaskScheduler().runDelayed(loc, () -> {
+                if (isValidMiningOperation(targetBlock, originalType, dispenser, originalTool)) {
+                    targetBlock.getWorld().playSound(
+                        loc,
+                        targetBlock.getBlockData().getSoundGroup().getHitSound(),
+                        1.0f,
+                        0.8f
+                    );
+                }
+            }, soundTick - fromTick);
+        }
+    }
+
+    /**
+     * Fast-forwarded operations only wake up every check interval to see whether a player came
+     * into range, and switch back to the full animation from the current tick if one did. Breaks
+     * longer than {@value #MAX_VIEWER_CHECKS} intervals stretch the interval so they never check
+     * more often than that.
+     */
+    private void scheduleViewerCheck(Location loc, Block targetBlock, Material originalType,
+                                     Dispenser dispenser, ItemStack originalTool, int animationTicks, int elapsed) {
+        int interval = Math.max(viewerCheckInterval, animationTicks / (MAX_VIEWER_CHECKS + 1));
+        int nextCheck = elapsed + interval;
+        if (nextCheck >= animationTicks) return;
+
+        plugin.getTaskScheduler().runDelayed(loc, () -> {
+            // The scheduled break cleans up invalid operations, a changed block just ends the checks
+            if (targetBlock.getType() != originalType) return;
+
+            if (hasViewers(targetBlock)) {
+                scheduleCosmetics(loc, targetBlock, originalType, dispenser, originalTool, animationTicks, nextCheck);
+            } else {
+                scheduleViewerCheck(loc, targetBlock, originalType, dispenser, originalTool, animationTicks, nextCheck);
+            }
+        }, interval);
+    }
+
+    private boolean hasViewers(Block block) {
+        Location blockLoc = block.getLocation();
+        for (Player player : block.getWorld().getPlayers()) {
+            if (player.getLocation().distanceSquared(blockLoc) <= viewDistanceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordDispense(Block dispenserBlock, BlockFace facing, ItemStack item, Material target,
+                                DispenseRecorder.Outcome outcome) {
+        DispenseRecorder recorder = plugin.getDispenseRecorder();
+        if (recorder.isRecording()) {
+            recorder.recordMining(plugin.getTaskScheduler().getCurrentTick(), dispenserBlock, facing, item.getType(),
+                    item.getEnchantmentLevel(Enchantment.DIG_SPEED), target, outcome);
+        }
+    }
+
+    private void recordRejected(Location loc, Material tool, Material blockType, String reason) {
+        DispenserEvents.admissionRejected(loc, tool, blockType, reason);
+        plugin.getMetrics().dispenseRejected(loc, reason);
+    }
+
+    private void recordFinished(Location loc, Material tool, Material blockType,
+                                boolean completed, String reason, long startNanos) {
+        // A block break or chunk unload may already have ended this operation
+        if (!activeMiningOperations.contains(loc)) return;
+
+        DispenserEvents.miningFinished(loc, tool, blockType, completed, reason, startNanos);
+        plugin.getMetrics().miningFinished(loc, completed, startNanos);
+    }
+
     private void cleanupTracking(Location blockLoc, Location dispenserLoc, ItemStack tool) {
         // Clear any existing animation
         Block block = blockLoc.getBlock();
@@ -198,12 +435,13 @@ public class DispenserMiningHandler implements Listener {
         // Remove from tracking sets
         activeMiningOperations.remove(blockLoc);
         activeDispenserTools.remove(dispenserLoc.toString() + ":" + tool.getType().name());
+        statusSignal.update(dispenserLoc.getBlock(), DispenserStatusSignal.Status.IDLE);
     }
 
     private void scheduleMiningAnimation(Location loc, Block block, Material originalType, 
                                        Dispenser dispenser, ItemStack originalTool, int stage, long delay) {
         if (delay <= 0) delay = 1;
-        plugin.getServer().getRegionScheduler().runDelayed(plugin, loc, (task) -> {
+        plugin.getTaskScheduler().runDelayed(loc, () -> {
             if (!isValidMiningOperation(block, originalType, dispenser, originalTool)) {
                 cleanupTracking(loc, dispenser.getLocation(), originalTool);
                 showMiningAnimation(block, -1); // Clear animation
@@ -213,30 +451,33 @@ public class DispenserMiningHandler implements Listener {
         }, delay);
     }
 
-    private void scheduleBlockBreak(Location loc, Dispenser dispenser, ItemStack tool, 
-                                  Block block, Material originalType, long delay) {
+    private void scheduleBlockBreak(Location loc, Dispenser dispenser, ItemStack tool, ToolWear wear,
+                                  Block block, Material originalType, long delay, long startNanos) {
         Location originalLocation = block.getLocation().clone();
         String dispenserToolKey = dispenser.getLocation().toString() + ":" + tool.getType().name();
         ItemStack originalTool = tool.clone();
         
         if (delay <= 0) delay = 1;
         
-        plugin.getServer().getRegionScheduler().runDelayed(plugin, loc, (task) -> {
+        plugin.getTaskScheduler().runDelayed(loc, () -> {
             try {
                 if (!isValidMiningOperation(block, originalType, dispenser, originalTool)) {
                     showMiningAnimation(block, -1); // Clear animation
+                    recordFinished(originalLocation, originalTool.getType(), originalType, false, "invalidated", startNanos);
                     return;
                 }
                 
-                performInstantMining(dispenser, tool, block);
+                performInstantMining(dispenser, tool, block, wear);
+                recordFinished(originalLocation, originalTool.getType(), originalType, true, "broken", startNanos);
             } finally {
                 activeMiningOperations.remove(originalLocation);
                 activeDispenserTools.remove(dispenserToolKey);
+                statusSignal.update(dispenser.getBlock(), DispenserStatusSignal.Status.IDLE);
             }
         }, delay);
     }
 
-    private void performInstantMining(Dispenser dispenser, ItemStack pickaxe, Block block) {
+    private void performInstantMining(Dispenser dispenser, ItemStack pickaxe, Block block, ToolWear wear) {
         // Clear any existing animation first
         showMiningAnimation(block, -1);
         
@@ -252,39 +493,14 @@ public class DispenserMiningHandler implements Listener {
         block.breakNaturally(pickaxe);
         
         // Handle pickaxe durability
-        if (pickaxe.getType().getMaxDurability() > 0) {
-            ItemStack[] contents = dispenser.getInventory().getContents();
-            for (int i = 0; i < contents.length; i++) {
-                ItemStack item = contents[i];
-                if (item != null && item.equals(pickaxe)) {
-                    int unbreakingLevel = item.getEnchantmentLevel(Enchantment.DURABILITY);
-                    
-                    boolean shouldTakeDamage = true;
-                    if (unbreakingLevel > 0) {
-                        double chance = 1.0 / (unbreakingLevel + 1);
-                        shouldTakeDamage = Math.random() < chance;
-                    }
-                    
-                    if (shouldTakeDamage) {
-                        // Only apply 1 durability damage, removed the 10x multiplier
-                        short newDurability = (short) (item.getDurability() + 1);
-                        item.setDurability(newDurability);
-                        
-                        dispenser.getInventory().setItem(i, item);
-                        
-                        if (newDurability >= item.getType().getMaxDurability()) {
-                            block.getWorld().playSound(
-                                dispenser.getLocation(),
-                                org.bukkit.Sound.ENTITY_ITEM_BREAK,
-                                1.0f,
-                                1.0f
-                            );
-                            dispenser.getInventory().setItem(i, null);
-                        }
-                    }
-                    break;
-                }
-            }
+        wear.recordBreak();
+        if (wear.apply(dispenser.getInventory(), pickaxe)) {
+            block.getWorld().playSound(
+                dispenser.getLocation(),
+                org.bukkit.Sound.ENTITY_ITEM_BREAK,
+                1.0f,
+                1.0f
+            );
         }
     }
 
@@ -297,21 +513,28 @@ public class DispenserMiningHandler implements Listener {
         
         // Send the animation packet to nearby players
         world.getPlayers().stream()
-            .filter(player -> player.getLocation().distanceSquared(blockLoc) <= 1024)
+            .filter(player -> player.getLocation().distanceSquared(blockLoc) <= ANIMATION_RANGE_SQUARED)
             .forEach(player -> player.sendBlockDamage(blockLoc, damage));
     }
 
     private float calculateMiningTicks(ItemStack tool, Block block) {
-        float hardness = block.getType().getHardness();
+        return calculateMiningSeconds(plugin.getToolRules(), tool.getType(),
+                tool.getEnchantmentLevel(Enchantment.DIG_SPEED), block.getType());
+    }
+
+    /**
+     * Mining time in seconds for a tool with the given efficiency level, without touching the world.
+     */
+    public static float calculateMiningSeconds(ToolRules rules, Material tool, int efficiencyLevel, Material block) {
+        float hardness = block.getHardness();
         if (hardness == 0) return 0.05f; // Instant break for zero hardness blocks
         
-        boolean isCorrectTool = isCorrectToolForBlock(tool.getType(), block.getType());
-        float speedMultiplier = getBaseBreakingSpeed(tool.getType(), block.getType());
+        boolean isCorrectTool = rules.isCorrectTool(tool, block);
+        float speedMultiplier = rules.getBaseBreakingSpeed(tool);
         
         // If it's the correct tool and we can harvest it
         if (isCorrectTool) {
             // Apply efficiency enchantment
-            int efficiencyLevel = tool.getEnchantmentLevel(Enchantment.DIG_SPEED);
             if (efficiencyLevel > 0) {
                 speedMultiplier += (efficiencyLevel * efficiencyLevel) + 1;
             }
@@ -343,74 +566,10 @@ public class DispenserMiningHandler implements Listener {
         return Math.min(seconds, 20.0f);
     }
 
-    private float getBaseBreakingSpeed(Material tool, Material block) {
-        String toolName = tool.name();
-        if (toolName.contains("GOLD")) return 12.0f;
-        if (toolName.contains("NETHERITE")) return 9.0f;
-        if (toolName.contains("DIAMOND")) return 8.0f;
-        if (toolName.contains("IRON")) return 6.0f;
-        if (toolName.contains("STONE")) return 4.0f;
-        if (toolName.contains("WOODEN")) return 2.0f;
-        return 1.0f;
-    }
-
-    private boolean canMineBlock(ItemStack tool, Block block) {
-        return block.getType().isSolid() && 
-               !block.getType().isAir() && 
-               block.getType().getHardness() >= 0; // Check for unbreakable blocks (-1 hardness)
-    }
-
-    private boolean isCorrectToolForBlock(Material tool, Material block) {
-        String toolName = tool.name();
-        String blockName = block.name();
-        
-        // Pickaxe materials
-        if (toolName.endsWith("PICKAXE")) {
-            if (block == Material.OBSIDIAN || block == Material.CRYING_OBSIDIAN || block == Material.ANCIENT_DEBRIS) {
-                return tool == Material.DIAMOND_PICKAXE || tool == Material.NETHERITE_PICKAXE;
-            }
-            
-            if (blockName.contains("DIAMOND") || blockName.contains("EMERALD") || blockName.contains("GOLD")) {
-                return tool == Material.IRON_PICKAXE || tool == Material.DIAMOND_PICKAXE || tool == Material.NETHERITE_PICKAXE;
-            }
-            
-            return blockName.contains("STONE") || blockName.contains("ORE") || 
-                   blockName.contains("BRICK") || blockName.contains("CONCRETE") ||
-                   blockName.contains("TERRACOTTA") || blockName.contains("DEEPSLATE") ||
-                   blockName.contains("GRANITE") || blockName.contains("ANDESITE") ||
-                   blockName.contains("DIORITE");
-        }
-        
-        // Axe materials
-        if (toolName.endsWith("_AXE")) {
-            return blockName.contains("LOG") || blockName.contains("WOOD") || 
-                   blockName.contains("PLANK") || blockName.contains("FENCE") ||
-                   blockName.contains("DOOR") || blockName.contains("TRAPDOOR") ||
-                   blockName.contains("STAIRS") && block.name().contains("WOOD");
-        }
-        
-        // Shovel materials
-        if (toolName.endsWith("_SHOVEL")) {
-            return block == Material.DIRT || block == Material.GRASS_BLOCK ||
-                   block == Material.SAND || block == Material.GRAVEL ||
-                   block == Material.CLAY || block == Material.SOUL_SAND ||
-                   block == Material.SOUL_SOIL || block == Material.MYCELIUM ||
-                   block == Material.SNOW || block == Material.SNOW_BLOCK;
-        }
-        
-        // Hoe materials
-        if (toolName.endsWith("_HOE")) {
-            return // Add crop support
-                   block == Material.WHEAT || block == Material.CARROTS ||
-                   block == Material.POTATOES || block == Material.BEETROOTS ||
-                   block == Material.NETHER_WART || block == Material.COCOA ||
-                   blockName.contains("CROP") || blockName.contains("SEEDS") ||
-                   // Add farmland/dirt support
-                   block == Material.FARMLAND || block == Material.DIRT ||
-                   block == Material.GRASS_BLOCK || block == Material.DIRT_PATH;
-        }
-        
-        return false;
+    public static boolean canMineBlock(Material block) {
+        return block.isSolid() && 
+               !block.isAir() && 
+               block.getHardness() >= 0; // Check for unbreakable blocks (-1 hardness)
     }
 
     private void removePickaxe(Dispenser dispenser, ItemStack pickaxe) {
@@ -425,10 +584,25 @@ public class DispenserMiningHandler implements Listener {
     }
 
     private boolean isTool(Material material) {
-        return material.name().endsWith("_PICKAXE") ||
-               material.name().endsWith("_AXE") ||
-               material.name().endsWith("_SHOVEL") ||
-               material.name().endsWith("_HOE");
+        return plugin.getToolRules().isTool(material);
+    }
+
+    /**
+     * Estimated heap held by the operation registries: a Location plus hash set node per mined
+     * block, a key string plus node per busy tool.
+     */
+    public long estimateRetainedBytes() {
+        long bytes = activeMiningOperations.size() * LOCATION_ENTRY_BYTES;
+        synchronized (activeDispenserTools) {
+            for (String key : activeDispenserTools) {
+                bytes += TOOL_KEY_ENTRY_BYTES + key.length();
+            }
+        }
+        return bytes;
+    }
+
+    public boolean isHarvestEnabled() {
+        return cropHarvester.isEnabled();
     }
 
     public int getActiveMiningCount() {
@@ -440,35 +614,15 @@ public class DispenserMiningHandler implements Listener {
     }
 
     public Set<Location> getActiveMiningLocations() {
-        return new HashSet<>(activeMiningOperations);
+        synchronized (activeMiningOperations) {
+            return new HashSet<>(activeMiningOperations);
+        }
     }
 
     public Set<String> getActiveToolOperations() {
-        return new HashSet<>(activeDispenserTools);
-    }
-
-    private float calculateToolEfficiency(ItemStack tool, Block block) {
-        if (!isCorrectToolForBlock(tool.getType(), block.getType())) {
-            return 0.1f; // Very low priority for wrong tools
-        }
-        
-        float baseSpeed = getBaseBreakingSpeed(tool.getType(), block.getType());
-        int efficiencyLevel = tool.getEnchantmentLevel(Enchantment.DIG_SPEED);
-        
-        // Add efficiency bonus
-        if (efficiencyLevel > 0) {
-            baseSpeed += (efficiencyLevel * efficiencyLevel) + 1;
+        synchronized (activeDispenserTools) {
+            return new HashSet<>(activeDispenserTools);
         }
-        
-        // Prioritize better tool materials
-        if (tool.getType().name().contains("NETHERITE")) baseSpeed *= 1.2f;
-        else if (tool.getType().name().contains("DIAMOND")) baseSpeed *= 1.1f;
-        
-        // Consider durability - slightly prefer tools with more durability left
-        float durabilityFactor = 1.0f - (float)tool.getDurability() / tool.getType().getMaxDurability();
-        baseSpeed *= (0.9f + (0.1f * durabilityFactor));
-        
-        return baseSpeed;
     }
 
     // Add chunk unload event handler
@@ -477,6 +631,7 @@ public class DispenserMiningHandler implements Listener {
         // Clean up any mining operations in the unloading chunk
         activeMiningOperations.removeIf(loc -> {
             if (loc.getChunk().equals(event.getChunk())) {
+                recordFinished(loc, null, null, false, "chunk-unloaded", 0);
                 String toolKey = null;
                 for (String key : activeDispenserTools) {
                     if (key.contains(loc.toString())) {
@@ -499,6 +654,7 @@ public class DispenserMiningHandler implements Listener {
         if (activeMiningOperations.contains(loc)) {
             // Clear animation before removing tracking
             showMiningAnimation(event.getBlock(), -1);
+            recordFinished(loc, null, event.getBlock().getType(), false, "broken-by-player", 0);
             activeMiningOperations.remove(loc);
             activeDispenserTools.removeIf(key -> key.contains(loc.toString()));
         }
@@ -506,6 +662,8 @@ public class DispenserMiningHandler implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onInventoryChange(InventoryMoveItemEvent event) {
+        forgetRanking(event.getSource());
+        forgetRanking(event.getDestination());
         if (event.getSource().getHolder() instanceof Dispenser) {
             Dispenser dispenser = (Dispenser) event.getSource().getHolder();
             String dispenserLoc = dispenser.getLocation().toString();
@@ -521,6 +679,20 @@ public class DispenserMiningHandler implements Listener {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        // A player may have moved the tools around
+        forgetRanking(event.getInventory());
+    }
+
+    private void forgetRanking(Inventory inventory) {
+        if (inventory.getType() != InventoryType.DISPENSER) return;
+        Location location = inventory.getLocation();
+        if (location != null) {
+            plugin.getDispenserDirectory().setToolRanking(location.getBlock(), null);
+        }
+    }
+
     private boolean isValidMiningOperation(Block block, Material originalType, 
                                          Dispenser dispenser, ItemStack originalTool) {
         // Check if chunk is loaded
@@ -1,7 +1,10 @@
 package org.yusaki.lamdispensers;
 
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.block.Dispenser;
@@ -9,149 +12,443 @@ import org.bukkit.block.data.Directional;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
+import org.yusaki.lamdispensers.jfr.DispenseHandledEvent;
+import org.yusaki.lamdispensers.jfr.DispenserEvents;
+import org.yusaki.lamdispensers.jfr.PlacementBatchEvent;
+import org.yusaki.lamdispensers.metrics.AllocationTracker;
+import org.yusaki.lamdispensers.replay.DispenseRecorder;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DispenserPlacementHandler implements Listener {
 
     private final LamDispensers plugin;
     private final Random random = new Random();
-    private final Set<Material> replaceable = new HashSet<>();
-    private final Set<Material> placeableBlocks = new HashSet<>();
+    private final PlacementTables tables;
+    private final Map<BatchKey, List<PlacementRequest>> pendingBatches = new ConcurrentHashMap<>();
+    private final NamespacedKey lineLengthKey;
+    private volatile boolean lineBuildEnabled;
+    private volatile String lineBuildNameTag;
+    private volatile int lineBuildMaxLength;
+
+    private static final long BATCH_ENTRY_BYTES = 120;
+    private static final long REQUEST_BYTES = 48;
+
+    private static final BlockFace[] NEIGHBOUR_FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
 
     public DispenserPlacementHandler(LamDispensers plugin) {
         this.plugin = plugin;
-        initializeReplaceableBlocks();
-        initializePlaceableBlocks();
+        this.lineLengthKey = new NamespacedKey(plugin, "line-length");
+        this.tables = PlacementTables.build();
+        reloadSettings();
     }
 
-    private void initializeReplaceableBlocks() {
-        replaceable.add(Material.AIR);
-        replaceable.add(Material.WATER);
-        replaceable.add(Material.LAVA);
+    /**
+     * Re-reads the config settings, leaving queued batches and the block tables alone.
+     */
+    public void reloadSettings() {
+        lineBuildEnabled = plugin.getConfig().getBoolean("placement.line-build.enabled", true);
+        lineBuildNameTag = plugin.getConfig().getString("placement.line-build.name-tag", "[line]").toLowerCase();
+        lineBuildMaxLength = Math.max(1, plugin.getConfig().getInt("placement.line-build.max-length", 16));
     }
 
-    private void initializePlaceableBlocks() {
-        // Add all solid blocks
-        for (Material material : Material.values()) {
-            if (material.isBlock() && material.isSolid()) {
-                placeableBlocks.add(material);
+    @EventHandler
+    public void onDispense(BlockDispenseEvent event) {
+        Block dispenserBlock = event.getBlock();
+        if (!(dispenserBlock.getState() instanceof Dispenser)) return;
+        if (!(dispenserBlock.getBlockData() instanceof Directional)) return;
+
+        Dispenser dispenser = (Dispenser) dispenserBlock.getState();
+
+        Directional directional = (Directional) dispenserBlock.getBlockData();
+        BlockFace facing = directional.getFacing();
+        Block frontBlock = dispenserBlock.getRelative(facing);
+
+        ItemStack dispensedItem = event.getItem();
+        Material frontType = frontBlock.getType();
+        DispenseRecorder.Outcome outcome = tables.admit(dispensedItem.getType(), frontType);
+        if (outcome == null) return;
+
+        DispenseRecorder recorder = plugin.getDispenseRecorder();
+        if (recorder.isRecording()) {
+            recorder.recordPlacement(plugin.getTaskScheduler().getCurrentTick(), dispenserBlock, facing,
+                    dispensedItem.getType(), frontType, outcome);
+        }
+        if (outcome != DispenseRecorder.Outcome.PLACEMENT_QUEUED) return;
+
+        event.setCancelled(true);
+
+        AllocationTracker allocations = plugin.getMetrics().getPlacementAllocations();
+        long allocatedBefore = allocations.begin();
+        plugin.getMetrics().dispenseHandled(dispenserBlock.getLocation(), "placement");
+        DispenseHandledEvent handledEvent = new DispenseHandledEvent();
+        handledEvent.begin();
+        try {
+            plugin.getDispenserDirectory().recordPlacement(dispenserBlock, facing);
+            queuePlacement(new PlacementRequest(dispenserBlock, frontBlock, facing, getLineLength(dispenser), System.nanoTime()));
+        } finally {
+            allocations.end(allocatedBefore);
+            handledEvent.end();
+            if (handledEvent.shouldCommit()) {
+                handledEvent.setPosition(dispenserBlock.getLocation());
+                handledEvent.handler = "placement";
+                handledEvent.item = dispensedItem.getType().name();
+                handledEvent.commit();
             }
         }
+    }
+
+    /**
+     * The block tables this handler decides with. They never change, so callers may keep them.
+     */
+    public PlacementTables getTables() {
+        return tables;
+    }
+
+    public int getQueuedPlacementCount() {
+        int count = 0;
+        for (List<PlacementRequest> batch : pendingBatches.values()) {
+            count += batch.size();
+        }
+        return count;
+    }
 
-        // Remove TNT and Shulker Boxes
-        placeableBlocks.remove(Material.TNT);
-        for (Material material : Material.values()) {
-            if (material.name().endsWith("SHULKER_BOX")) {
-                placeableBlocks.remove(material);
+    /**
+     * Estimated heap held by the batch queue and the material lookup sets.
+     */
+    public long estimateRetainedBytes() {
+        long bytes = pendingBatches.size() * BATCH_ENTRY_BYTES + getQueuedPlacementCount() * REQUEST_BYTES;
+        bytes += tables.estimateRetainedBytes();
+        return bytes;
+    }
+
+    /**
+     * Number of blocks a single pulse places. Line-build dispensers are marked either by the
+     * line-length PDC value or by carrying the configured tag in their custom name.
+     */
+    private int getLineLength(Dispenser dispenser) {
+        if (!lineBuildEnabled) return 1;
+
+        Integer length = dispenser.getPersistentDataContainer().get(lineLengthKey, PersistentDataType.INTEGER);
+        if (length != null) {
+            return Math.max(1, Math.min(length, lineBuildMaxLength));
+        }
+
+        Component customName = dispenser.customName();
+        if (customName != null && !lineBuildNameTag.isEmpty()
+                && PlainTextComponentSerializer.plainText().serialize(customName).toLowerCase().contains(lineBuildNameTag)) {
+            return lineBuildMaxLength;
+        }
+        return 1;
+    }
+
+    /**
+     * Adds a placement to the batch of its chunk. The first request of a batch schedules
+     * the flush, every later one in the same tick just joins the list.
+     */
+    private void queuePlacement(PlacementRequest request) {
+        Block dispenserBlock = request.dispenserBlock();
+        plugin.getMetrics().placementQueued(dispenserBlock.getLocation());
+        BatchKey key = new BatchKey(dispenserBlock.getWorld().getUID(), dispenserBlock.getX() >> 4, dispenserBlock.getZ() >> 4);
+        boolean[] firstInBatch = new boolean[1];
+
+        pendingBatches.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new ArrayList<>();
+                firstInBatch[0] = true;
             }
+            batch.add(request);
+            return batch;
+        });
+
+        if (firstInBatch[0]) {
+            plugin.getTaskScheduler().run(dispenserBlock.getLocation(), () -> {
+                List<PlacementRequest> batch = pendingBatches.remove(key);
+                if (batch != null) {
+                    plugin.getMetrics().placementBatchApplied(dispenserBlock.getLocation(), batch.size());
+                    applyBatch(batch);
+                }
+            });
         }
+    }
 
-        // Add specific transparent blocks
-        Material[] transparentBlocks = {
-                // Carpets
-                Material.WHITE_CARPET, Material.ORANGE_CARPET, Material.MAGENTA_CARPET,
-                Material.LIGHT_BLUE_CARPET, Material.YELLOW_CARPET, Material.LIME_CARPET,
-                Material.PINK_CARPET, Material.GRAY_CARPET, Material.LIGHT_GRAY_CARPET,
-                Material.CYAN_CARPET, Material.PURPLE_CARPET, Material.BLUE_CARPET,
-                Material.BROWN_CARPET, Material.GREEN_CARPET, Material.RED_CARPET,
-                Material.BLACK_CARPET,
+    private void applyBatch(List<PlacementRequest> batch) {
+        AllocationTracker allocations = plugin.getMetrics().getPlacementAllocations();
+        long allocatedBefore = allocations.begin();
+        try {
+            applyBatchTracked(batch);
+        } finally {
+            allocations.end(allocatedBefore);
+        }
+    }
 
-                // Rails
-                Material.RAIL, Material.POWERED_RAIL, Material.DETECTOR_RAIL,
-                Material.ACTIVATOR_RAIL,
+    private void applyBatchTracked(List<PlacementRequest> batch) {
+        PlacementBatchEvent batchEvent = new PlacementBatchEvent();
+        batchEvent.begin();
 
-                // Saplings
-                Material.OAK_SAPLING, Material.SPRUCE_SAPLING, Material.BIRCH_SAPLING,
-                Material.JUNGLE_SAPLING, Material.ACACIA_SAPLING, Material.DARK_OAK_SAPLING,
-                Material.MANGROVE_PROPAGULE,Material.CHERRY_SAPLING,
+        List<DeferredPlacement> deferredPhysics = new ArrayList<>();
+        int placed = 0;
 
-                // Other common transparent blocks
-                Material.TORCH, Material.REDSTONE_TORCH, Material.LEVER, Material.STONE_BUTTON,
-                Material.OAK_BUTTON, Material.SPRUCE_BUTTON, Material.BIRCH_BUTTON,
-                Material.JUNGLE_BUTTON, Material.ACACIA_BUTTON, Material.DARK_OAK_BUTTON,
-                Material.CRIMSON_BUTTON, Material.WARPED_BUTTON, Material.REPEATER,
-                Material.COMPARATOR, Material.REDSTONE_WIRE
-        };
+        for (PlacementRequest request : batch) {
+            placed += applyRequest(request, deferredPhysics);
+        }
+        placed += placeDeferred(deferredPhysics);
 
-        placeableBlocks.addAll(Set.of(transparentBlocks));
+        batchEvent.end();
+        if (batchEvent.shouldCommit()) {
+            batchEvent.setPosition(batch.get(0).dispenserBlock().getLocation());
+            batchEvent.requested = batch.size();
+            batchEvent.placed = placed;
+            batchEvent.deferredPhysics = deferredPhysics.size();
+            batchEvent.commit();
+        }
     }
 
-    @EventHandler
-    public void onDispense(BlockDispenseEvent event) {
-        Block dispenserBlock = event.getBlock();
-        if (!(dispenserBlock.getState() instanceof Dispenser)) return;
+    /**
+     * Places the blocks of one request and takes their items from the dispenser.
+     * Returns how many went in directly; the rest are added to {@code deferredPhysics}.
+     */
+    private int applyRequest(PlacementRequest request, List<DeferredPlacement> deferredPhysics) {
+        // Re-check conditions, an earlier entry of this batch may have filled the spot
+        if (!tables.isReplaceable(request.frontBlock().getType())) return 0;
+        if (!(request.dispenserBlock().getState() instanceof Dispenser)) return 0;
 
-        Dispenser dispenser = (Dispenser) dispenserBlock.getState();
-        if (!(dispenserBlock.getBlockData() instanceof Directional)) return;
+        Inventory inventory = ((Dispenser) request.dispenserBlock().getState()).getInventory();
+        int slot = getRandomFilledSlot(inventory);
+        if (slot < 0) return 0;
 
-        Directional directional = (Directional) dispenserBlock.getBlockData();
-        BlockFace facing = directional.getFacing();
-        Block frontBlock = dispenserBlock.getRelative(facing);
+        ItemStack selectedItem = inventory.getItem(slot);
+        Material type = selectedItem.getType();
+        if (!tables.isPlaceable(type)) return 0;
 
-        if (!replaceable.contains(frontBlock.getType())) return;
+        int length = request.lineLength() > 1
+                ? Math.min(request.lineLength(), countItems(inventory, type))
+                : 1;
 
-        ItemStack dispensedItem = event.getItem();
-        if (!placeableBlocks.contains(dispensedItem.getType())) return;
+        int placed = 0;
+        int consumed = 0;
+        Block target = request.frontBlock();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                target = target.getRelative(request.facing());
+                // Stop where the line leaves the loaded area or this region, before reading the block,
+                // then at the first obstacle
+                if (!target.getWorld().isChunkLoaded(target.getX() >> 4, target.getZ() >> 4)
+                        || !plugin.getTaskScheduler().isOwnedByCurrentThread(target.getLocation())
+                        || !tables.isReplaceable(target.getType())) break;
+            }
 
-        event.setCancelled(true);
+            placed += placeOrDefer(target, request.dispenserBlock(), type, request.queuedAt(), deferredPhysics);
+            consumed++;
+        }
 
-        Location loc = dispenserBlock.getLocation();
-        scheduleFoliaCompatibleTask(loc, () -> {
-            // Re-check conditions
-            if (!replaceable.contains(frontBlock.getType())) return;
-
-            ItemStack selectedItem = getRandomItemFromDispenser(dispenser);
-            if (selectedItem != null && placeableBlocks.contains(selectedItem.getType())) {
-                if (removeItem(dispenser, selectedItem)) {
-                    Material originalType = frontBlock.getType();
-                    frontBlock.setType(selectedItem.getType());
-                    //plugin.getLogger().info("Dispenser placed a " + selectedItem.getType() + " block, replacing " + originalType);
-                }
+        if (consumed == 1) {
+            takeOne(inventory, slot, selectedItem);
+        } else {
+            takeItems(inventory, slot, type, consumed);
+        }
+        return placed;
+    }
+
+    /**
+     * Places one block right away if it can skip physics, otherwise adds it to {@code deferredPhysics}.
+     * Returns 1 if the block went in.
+     */
+    private int placeOrDefer(Block target, Block dispenserBlock, Material type, long queuedAt,
+                             List<DeferredPlacement> deferredPhysics) {
+        Material originalType = target.getType();
+        if (canSkipPhysics(target, type, originalType)) {
+            target.setType(type, false);
+            recordPlaced(target, type, originalType, queuedAt);
+            return 1;
+        }
+        deferredPhysics.add(new DeferredPlacement(target, dispenserBlock, type, queuedAt));
+        return 0;
+    }
+
+    /**
+     * Blocks whose neighbours react to updates go in last, with physics, once the quiet ones are down.
+     * A spot filled in the meantime refunds the item. Returns how many went in.
+     */
+    private int placeDeferred(List<DeferredPlacement> deferredPhysics) {
+        int placed = 0;
+        for (DeferredPlacement deferred : deferredPhysics) {
+            Material originalType = deferred.block().getType();
+            if (!tables.isReplaceable(originalType)) {
+                refundItem(deferred);
+                continue;
             }
-        });
+            deferred.block().setType(deferred.type());
+            recordPlaced(deferred.block(), deferred.type(), originalType, deferred.queuedAt());
+            placed++;
+        }
+        return placed;
+    }
+
+    /**
+     * Places {@code count} stone blocks into open air above {@code origin} in one tick, first
+     * through the same per-block placement a batch uses (physics skipped where safe, the rest
+     * deferred to the end, placed blocks reported to the metrics) and then with a physics
+     * update per block, clearing the cube after each run. Has to run on the thread that owns
+     * {@code origin}.
+     *
+     * @return null if there isn't a loaded, owned cube of air to build in
+     */
+    PlacementBenchmark benchmarkPlacement(Location origin, int count) {
+        int side = (int) Math.ceil(Math.cbrt(count));
+        Block corner = origin.getBlock().getRelative(BlockFace.UP, 3);
+        List<Block> targets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = corner.getX() + i % side;
+            int y = corner.getY() + i / (side * side);
+            int z = corner.getZ() + i / side % side;
+            if (!corner.getWorld().isChunkLoaded(x >> 4, z >> 4)) return null;
+            Block target = corner.getWorld().getBlockAt(x, y, z);
+            if (!plugin.getTaskScheduler().isOwnedByCurrentThread(target.getLocation()) || !target.getType().isAir()) return null;
+            targets.add(target);
+        }
+
+        // The origin holds no dispenser, so nothing would be refunded there
+        Block source = origin.getBlock();
+        long start = System.nanoTime();
+        List<DeferredPlacement> deferred = new ArrayList<>();
+        for (Block target : targets) {
+            placeOrDefer(target, source, Material.STONE, start, deferred);
+        }
+        placeDeferred(deferred);
+        long batchNanos = System.nanoTime() - start;
+        clear(targets);
+
+        start = System.nanoTime();
+        for (Block target : targets) {
+            target.setType(Material.STONE);
+        }
+        long physicsNanos = System.nanoTime() - start;
+        clear(targets);
+
+        return new PlacementBenchmark(count, deferred.size(), batchNanos, physicsNanos);
+    }
+
+    private void clear(List<Block> targets) {
+        for (Block target : targets) {
+            target.setType(Material.AIR, false);
+        }
+    }
+
+    private void recordPlaced(Block block, Material type, Material originalType, long queuedAt) {
+        Location location = block.getLocation();
+        DispenserEvents.blockPlaced(location, type, originalType, queuedAt);
+        plugin.getMetrics().blockPlaced(location);
+    }
+
+    /**
+     * A block can go in without physics when it is a plain full cube replacing air and
+     * none of its neighbours would change shape or state because of it. A neighbour in an
+     * unloaded chunk or another region can't be read here, so it counts as one that would.
+     */
+    private boolean canSkipPhysics(Block block, Material type, Material originalType) {
+        if (!originalType.isAir() || !tables.isInert(type)) return false;
+
+        for (BlockFace face : NEIGHBOUR_FACES) {
+            Block neighbourBlock = block.getRelative(face);
+            if (!neighbourBlock.getWorld().isChunkLoaded(neighbourBlock.getX() >> 4, neighbourBlock.getZ() >> 4)
+                    || !plugin.getTaskScheduler().isOwnedByCurrentThread(neighbourBlock.getLocation())) {
+                return false;
+            }
+            Material neighbour = neighbourBlock.getType();
+            if (!neighbour.isAir() && !tables.isInert(neighbour)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private ItemStack getRandomItemFromDispenser(Dispenser dispenser) {
-        ItemStack[] contents = dispenser.getInventory().getContents();
+    private int getRandomFilledSlot(Inventory inventory) {
         int[] filledSlots = new int[9];
         int filledCount = 0;
 
         for (int i = 0; i < 9; i++) {
-            if (contents[i] != null && !contents[i].getType().isAir()) {
+            ItemStack item = inventory.getItem(i);
+            if (item != null && !item.getType().isAir()) {
                 filledSlots[filledCount++] = i;
             }
         }
 
-        if (filledCount == 0) return null;
+        if (filledCount == 0) return -1;
 
-        int selectedSlot = filledSlots[random.nextInt(filledCount)];
-        return contents[selectedSlot];
+        return filledSlots[random.nextInt(filledCount)];
+    }
+
+    private void takeOne(Inventory inventory, int slot, ItemStack item) {
+        if (item.getAmount() > 1) {
+            item.setAmount(item.getAmount() - 1);
+            inventory.setItem(slot, item);
+        } else {
+            inventory.setItem(slot, null);
+        }
+    }
+
+    private int countItems(Inventory inventory, Material type) {
+        int count = 0;
+        for (int i = 0; i < 9; i++) {
+            ItemStack item = inventory.getItem(i);
+            if (item != null && item.getType() == type) {
+                count += item.getAmount();
+            }
+        }
+        return count;
     }
 
-    private boolean removeItem(Dispenser dispenser, ItemStack item) {
-        ItemStack[] contents = dispenser.getInventory().getContents();
-        int slot = dispenser.getInventory().first(item);
-        if (slot >= 0) {
-            if (contents[slot].getAmount() > 1) {
-                contents[slot].setAmount(contents[slot].getAmount() - 1);
+    /**
+     * Takes {@code amount} items of {@code type}, starting with the selected slot and
+     * spilling over into the other slots, touching only the slots that change.
+     */
+    private void takeItems(Inventory inventory, int firstSlot, Material type, int amount) {
+        for (int i = 0; i < 9 && amount > 0; i++) {
+            int slot = (firstSlot + i) % 9;
+            ItemStack item = inventory.getItem(slot);
+            if (item == null || item.getType() != type) continue;
+
+            int taken = Math.min(amount, item.getAmount());
+            amount -= taken;
+            if (taken < item.getAmount()) {
+                item.setAmount(item.getAmount() - taken);
+                inventory.setItem(slot, item);
             } else {
-                contents[slot] = null;
+                inventory.setItem(slot, null);
             }
-            dispenser.getInventory().setContents(contents);
-            return true;
         }
-        return false;
     }
 
-    private void scheduleFoliaCompatibleTask(Location location, Runnable task) {
-        try {
-            plugin.getServer().getRegionScheduler().execute(plugin, location, task);
-        } catch (NoSuchMethodError e) {
-            plugin.getServer().getScheduler().runTask(plugin, task);
+    private void refundItem(DeferredPlacement deferred) {
+        if (deferred.dispenserBlock().getState() instanceof Dispenser) {
+            Dispenser dispenser = (Dispenser) deferred.dispenserBlock().getState();
+            for (ItemStack leftover : dispenser.getInventory().addItem(new ItemStack(deferred.type())).values()) {
+                deferred.dispenserBlock().getWorld().dropItemNaturally(deferred.dispenserBlock().getLocation(), leftover);
+            }
         }
     }
+
+    record PlacementBenchmark(int blocks, int deferred, long batchNanos, long physicsNanos) {
+    }
+
+    private record BatchKey(UUID world, int chunkX, int chunkZ) {
+    }
+
+    private record PlacementRequest(Block dispenserBlock, Block frontBlock, BlockFace facing,
+                                    int lineLength, long queuedAt) {
+    }
+
+    private record DeferredPlacement(Block block, Block dispenserBlock, Material type, long queuedAt) {
+    }
 }
@@ -0,0 +1,78 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+import org.bukkit.block.data.Levelled;
+
+/**
+ * Shows what a mining dispenser is doing on an adjacent composter, whose fill level a
+ * comparator can read. A composter never powers the dispenser itself, so the signal
+ * can't feed back into the clock that drives it.
+ */
+class DispenserStatusSignal {
+    private static final BlockFace[] FACES = {
+            BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
+
+    enum Status {
+        IDLE(0),
+        MINING(1),
+        QUEUED(2),
+        THROTTLED(3),
+        OUT_OF_TOOLS(4);
+
+        // Kept below 7, which makes a composter turn into bone meal on its own
+        private final int level;
+
+        Status(int level) {
+            this.level = level;
+        }
+
+        int getLevel() {
+            return level;
+        }
+    }
+
+    private final LamDispensers plugin;
+    private volatile boolean enabled;
+
+    DispenserStatusSignal(LamDispensers plugin) {
+        this.plugin = plugin;
+    }
+
+    void reloadSettings() {
+        enabled = plugin.getConfig().getBoolean("mining.status-signal.enabled", false);
+    }
+
+    void update(Block dispenserBlock, Status status) {
+        if (!enabled) return;
+
+        if (plugin.getTaskScheduler().isOwnedByCurrentThread(dispenserBlock.getLocation())) {
+            apply(dispenserBlock, status);
+        } else {
+            plugin.getTaskScheduler().run(dispenserBlock.getLocation(), () -> apply(dispenserBlock, status));
+        }
+    }
+
+    private void apply(Block dispenserBlock, Status status) {
+        BlockData dispenserData = dispenserBlock.getBlockData();
+        if (!(dispenserData instanceof Directional directional)) return;
+
+        for (BlockFace face : FACES) {
+            // The block in front is the one being mined
+            if (face == directional.getFacing()) continue;
+
+            Block neighbour = dispenserBlock.getRelative(face);
+            if (neighbour.getType() != Material.COMPOSTER) continue;
+
+            Levelled composter = (Levelled) neighbour.getBlockData();
+            // Only write on change so observers and comparators see real transitions
+            if (composter.getLevel() == status.getLevel()) continue;
+            composter.setLevel(status.getLevel());
+            neighbour.setBlockData(composter, true);
+        }
+    }
+}
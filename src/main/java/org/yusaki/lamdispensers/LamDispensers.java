@@ -1,15 +1,24 @@
 package org.yusaki.lamdispensers;
 
+import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.command.PluginCommand;
 import org.yusaki.lamdispensers.commands.ReloadCommand;
+import org.yusaki.lamdispensers.metrics.MetricsExporter;
+import org.yusaki.lamdispensers.metrics.PluginMetrics;
+import org.yusaki.lamdispensers.replay.DispenseRecorder;
+import org.yusaki.lamdispensers.scheduler.SideExecutor;
+import org.yusaki.lamdispensers.scheduler.TaskScheduler;
 import org.yusaki.lib.YskLib;
 
 import static org.bukkit.Bukkit.getPluginManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public final class LamDispensers extends JavaPlugin {
 
@@ -17,6 +26,17 @@ public final class LamDispensers extends JavaPlugin {
     private YskLibWrapper wrapper;
     private DispenserPlacementHandler placementHandler;
     private DispenserMiningHandler miningHandler;
+    private PerformanceMonitor performanceMonitor;
+    private volatile ToolRules toolRules;
+    private volatile List<String> toolRuleChanges = new ArrayList<>();
+    private final AtomicInteger toolRuleGeneration = new AtomicInteger();
+    private final PluginMetrics metrics = new PluginMetrics();
+    private MetricsExporter metricsExporter;
+    private int metricsPort;
+    private final DispenseRecorder dispenseRecorder = new DispenseRecorder();
+    private TaskScheduler taskScheduler;
+    private SideExecutor sideExecutor;
+    private DispenserDirectory dispenserDirectory;
 
     @Override
     public void onEnable() {
@@ -25,6 +45,10 @@ public final class LamDispensers extends JavaPlugin {
         
         yskLib = (YskLib) getPluginManager().getPlugin("YskLib");
         wrapper = new YskLibWrapper(this, yskLib);
+        taskScheduler = TaskScheduler.create(this);
+        wrapper.logDebug("Using " + taskScheduler.getName() + " scheduler");
+        sideExecutor = new SideExecutor(taskScheduler, getLogger(), getConfig().getInt("side-work.max-tasks", 16));
+        compileToolRules();
 
         // Register command
         ReloadCommand reloadCommand = new ReloadCommand(this);
@@ -45,14 +69,19 @@ public final class LamDispensers extends JavaPlugin {
             command.setAliases(aliases.subList(1, aliases.size()));
         }
 
+        // The directory outlives module toggles so it keeps following chunk loads
+        dispenserDirectory = new DispenserDirectory(this);
+        getServer().getPluginManager().registerEvents(dispenserDirectory, this);
+        dispenserDirectory.loadLoadedChunks();
+
         // Register handlers based on config
-        registerHandlers();
+        syncHandlers();
+        startMetricsExporter();
 
         wrapper.logDebug("LamDispensers enabled with command: " + primaryCommand + 
                         " and aliases: " + (aliases.size() > 1 ? aliases.subList(1, aliases.size()) : "none"));
 
-        miningHandler = new DispenserMiningHandler(this);
-        PerformanceMonitor performanceMonitor = new PerformanceMonitor(this, miningHandler);
+        performanceMonitor = new PerformanceMonitor(this);
         getCommand("ldperf").setExecutor(performanceMonitor);
         getCommand("ldperf").setTabCompleter(performanceMonitor);
     }
@@ -60,6 +89,16 @@ public final class LamDispensers extends JavaPlugin {
     @Override
     public void onDisable() {
         unregisterHandlers();
+        stopMetricsExporter();
+        if (performanceMonitor != null) {
+            performanceMonitor.shutdown();
+        }
+        if (sideExecutor != null) {
+            sideExecutor.shutdown();
+        }
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+        }
         wrapper.logDebug("LamDispensers disabled!");
     }
 
@@ -67,19 +106,147 @@ public final class LamDispensers extends JavaPlugin {
         return wrapper;
     }
 
-    private void registerHandlers() {
-        unregisterHandlers(); // Clean up any existing handlers first
+    public DispenserMiningHandler getMiningHandler() {
+        return miningHandler;
+    }
+
+    public DispenserPlacementHandler getPlacementHandler() {
+        return placementHandler;
+    }
+
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+
+    /**
+     * Executor for work that doesn't touch the world, see {@link SideExecutor}.
+     */
+    public SideExecutor getSideExecutor() {
+        return sideExecutor;
+    }
+
+    public DispenserDirectory getDispenserDirectory() {
+        return dispenserDirectory;
+    }
+
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    public DispenseRecorder getDispenseRecorder() {
+        return dispenseRecorder;
+    }
+
+    public ToolRules getToolRules() {
+        return toolRules;
+    }
+
+    /**
+     * Blocks whose tool rules changed with the last reload.
+     */
+    public List<String> getToolRuleChanges() {
+        return toolRuleChanges;
+    }
+
+    /**
+     * Compiles the tool rules from the vanilla tags and the current config, then swaps
+     * them in as a whole so handlers never see a half-built table.
+     */
+    private void compileToolRules() {
+        applyToolRules(buildToolRules(getConfig().getConfigurationSection("tool-rules")));
+    }
+
+    /**
+     * Rebuilds the tool rules on the side executor and swaps them in once built. Handlers
+     * keep mining with the previous rules until then.
+     */
+    private void reloadToolRules(Consumer<List<String>> applied) {
+        // The section belongs to the config just loaded, a later reload replaces it instead of changing it
+        ConfigurationSection section = getConfig().getConfigurationSection("tool-rules");
+        int generation = toolRuleGeneration.incrementAndGet();
+        // The swap touches no world, the spawn only picks the thread the result lands on
+        Location anchor = getServer().getWorlds().get(0).getSpawnLocation();
+
+        boolean started = sideExecutor.supply(() -> buildToolRules(section), anchor, (compiled) -> {
+            // A newer reload started its own rebuild, this one is stale
+            if (generation != toolRuleGeneration.get()) return;
+            applyToolRules(compiled);
+            applied.accept(toolRuleChanges);
+        });
+        if (!started) {
+            // A full executor must not drop a reload
+            applyToolRules(buildToolRules(section));
+            applied.accept(toolRuleChanges);
+        }
+    }
 
-        if (getConfig().getBoolean("modules.placement", true)) {
+    private ToolRules buildToolRules(ConfigurationSection section) {
+        ToolRules compiled = ToolRules.compile(section);
+        for (String warning : compiled.getWarnings()) {
+            getLogger().warning("tool-rules." + warning);
+        }
+        return compiled;
+    }
+
+    private void applyToolRules(ToolRules compiled) {
+        ToolRules previous = toolRules;
+        toolRuleChanges = previous != null ? compiled.diff(previous) : new ArrayList<>();
+        toolRules = compiled;
+    }
+
+    /**
+     * Brings the registered handlers in line with the module switches. A handler that stays
+     * enabled is kept, along with its running operations and queued batches, and only
+     * re-reads its settings.
+     */
+    private List<String> syncHandlers() {
+        List<String> changes = new ArrayList<>();
+
+        boolean placement = getConfig().getBoolean("modules.placement", true);
+        if (placement && placementHandler == null) {
             placementHandler = new DispenserPlacementHandler(this);
             getServer().getPluginManager().registerEvents(placementHandler, this);
-            wrapper.logDebug("Placement module enabled!");
+            changes.add("placement module enabled");
+        } else if (!placement && placementHandler != null) {
+            HandlerList.unregisterAll(placementHandler);
+            placementHandler = null;
+            changes.add("placement module disabled");
+        } else if (placementHandler != null) {
+            placementHandler.reloadSettings();
         }
 
-        if (getConfig().getBoolean("modules.mining", true)) {
+        boolean mining = getConfig().getBoolean("modules.mining", true);
+        if (mining && miningHandler == null) {
             miningHandler = new DispenserMiningHandler(this);
             getServer().getPluginManager().registerEvents(miningHandler, this);
-            wrapper.logDebug("Mining module enabled!");
+            changes.add("mining module enabled");
+        } else if (!mining && miningHandler != null) {
+            HandlerList.unregisterAll(miningHandler);
+            miningHandler = null;
+            changes.add("mining module disabled");
+        } else if (miningHandler != null) {
+            miningHandler.reloadSettings();
+        }
+
+        for (String change : changes) {
+            wrapper.logDebug(change);
+        }
+        return changes;
+    }
+
+    private void startMetricsExporter() {
+        if (!getConfig().getBoolean("metrics.enabled", false)) return;
+
+        metricsPort = getConfig().getInt("metrics.port", 9464);
+        metricsExporter = new MetricsExporter(metrics, getLogger());
+        metricsExporter.start(metricsPort);
+        wrapper.logDebug("Metrics exporter listening on 127.0.0.1:" + metricsPort);
+    }
+
+    private void stopMetricsExporter() {
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+            metricsExporter = null;
         }
     }
 
@@ -95,10 +262,15 @@ public final class LamDispensers extends JavaPlugin {
     }
 
     /**
-     * Reloads the plugin configuration
+     * Reloads the plugin configuration and applies only what changed. The tool rules are
+     * rebuilt in the background, their changes go to {@code toolRulesApplied} once swapped in.
+     *
+     * @return a line per change that was applied right away
      */
-    public void reloadPlugin() {
+    public List<String> reloadPlugin(Consumer<List<String>> toolRulesApplied) {
         reloadConfig();
+        reloadToolRules(toolRulesApplied);
+        List<String> changes = new ArrayList<>();
         
         // Update command aliases
         List<String> aliases = getConfig().getStringList("command.aliases");
@@ -110,7 +282,18 @@ public final class LamDispensers extends JavaPlugin {
             getCommand(primaryCommand).setAliases(new ArrayList<>());
         }
         
-        registerHandlers();
+        changes.addAll(syncHandlers());
+
+        // The exporter only restarts when its own settings changed, so scrapes keep working
+        boolean metricsEnabled = getConfig().getBoolean("metrics.enabled", false);
+        int port = getConfig().getInt("metrics.port", 9464);
+        if (metricsEnabled != (metricsExporter != null) || (metricsEnabled && port != metricsPort)) {
+            stopMetricsExporter();
+            startMetricsExporter();
+            changes.add(metricsEnabled ? "metrics exporter on port " + port : "metrics exporter stopped");
+        }
+
         wrapper.logDebug("Configuration reloaded!");
+        return changes;
     }
 }
@@ -0,0 +1,132 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Material;
+import org.yusaki.lamdispensers.replay.DispenseRecorder.Outcome;
+
+import java.util.function.Predicate;
+
+/**
+ * The admission rules of the mining handler, free of any world access. The live handler
+ * reads the world and its operation registries, the replay driver reads the log and its
+ * simulated registries, and both hand what they saw to the same methods here.
+ */
+public final class MiningAdmission {
+
+    /**
+     * Tools a dispenser holds, by slot. Empty slots report a null type.
+     */
+    public interface Tools {
+        int size();
+
+        Material type(int slot);
+
+        int efficiencyLevel(int slot);
+
+        /**
+         * Durability used up so far, 0 for a fresh tool.
+         */
+        int damage(int slot);
+    }
+
+    /**
+     * Outcome of the tool stage and, for {@link Outcome#MINING_STARTED}, the slot to mine with.
+     */
+    public record Selection(Outcome outcome, int slot) {
+    }
+
+    private MiningAdmission() {
+    }
+
+    /**
+     * First stage, run where the pulse arrives. A null target means the target's chunk is not
+     * loaded. Returns null when the pulse goes on to {@link #selectTool} on the target's thread.
+     */
+    public static Outcome admitPulse(ToolRules rules, boolean harvestEnabled, Material item, Material target) {
+        if (target == null) {
+            return Outcome.CHUNK_UNLOADED;
+        }
+        // Hoes sweep the crops in front instead of mining a single block
+        if (harvestEnabled && !DispenserMiningHandler.canMineBlock(target)
+                && rules.getToolType(item) == ToolRules.ToolType.HOE) {
+            return Outcome.HARVEST_STARTED;
+        }
+        if (target.isAir()) {
+            return Outcome.NO_TARGET;
+        }
+        return null;
+    }
+
+    /**
+     * Second stage, run on the target's thread: picks the fastest idle tool. A dispenser whose
+     * only fitting tools are all busy is told {@link Outcome#TOOL_BUSY}, not {@link Outcome#NO_TOOL}.
+     */
+    public static Selection selectTool(ToolRules rules, Material target, boolean targetBusy,
+                                       Tools tools, Predicate<Material> toolBusy) {
+        if (targetBusy) {
+            return new Selection(Outcome.TARGET_BUSY, -1);
+        }
+        if (!DispenserMiningHandler.canMineBlock(target)) {
+            return new Selection(Outcome.NO_TOOL, -1);
+        }
+
+        int best = -1;
+        float bestSpeed = -1;
+        boolean sawBusy = false;
+        for (int slot = 0; slot < tools.size(); slot++) {
+            Material type = tools.type(slot);
+            if (type == null || !rules.isTool(type)) continue;
+            if (toolBusy.test(type)) {
+                sawBusy = true;
+                continue;
+            }
+
+            float speed = toolSpeed(rules, type, tools.efficiencyLevel(slot), tools.damage(slot), target);
+            if (speed > bestSpeed) {
+                bestSpeed = speed;
+                best = slot;
+            }
+        }
+
+        if (best >= 0) {
+            return new Selection(Outcome.MINING_STARTED, best);
+        }
+        return new Selection(sawBusy ? Outcome.TOOL_BUSY : Outcome.NO_TOOL, -1);
+    }
+
+    /**
+     * Ticks from admission until an operation frees its target and tool again: the start task
+     * runs on the next tick and the break follows after the animation.
+     */
+    public static int busyTicks(float miningSeconds) {
+        return miningSeconds <= 0.05f ? 1 : 1 + animationTicks(miningSeconds);
+    }
+
+    public static int animationTicks(float miningSeconds) {
+        return Math.max((int) (miningSeconds * 20), 2);
+    }
+
+    private static float toolSpeed(ToolRules rules, Material tool, int efficiencyLevel, int damage, Material block) {
+        if (!rules.isCorrectTool(tool, block)) {
+            return 0.1f; // Very low priority for wrong tools
+        }
+
+        float baseSpeed = rules.getBaseBreakingSpeed(tool);
+
+        // Add efficiency bonus
+        if (efficiencyLevel > 0) {
+            baseSpeed += (efficiencyLevel * efficiencyLevel) + 1;
+        }
+
+        // Prioritize better tool materials
+        int tier = rules.getToolTier(tool);
+        if (tier >= ToolRules.Tier.NETHERITE.getLevel()) baseSpeed *= 1.2f;
+        else if (tier == ToolRules.Tier.DIAMOND.getLevel()) baseSpeed *= 1.1f;
+
+        // Consider durability - slightly prefer tools with more durability left
+        short maxDurability = tool.getMaxDurability();
+        float durabilityFactor = maxDurability > 0 ? 1.0f - (float) damage / maxDurability : 1.0f;
+        baseSpeed *= (0.9f + (0.1f * durabilityFactor));
+
+        return baseSpeed;
+    }
+}
@@ -6,21 +6,39 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.yusaki.lamdispensers.jfr.FlightRecording;
+import org.yusaki.lamdispensers.metrics.AllocationTracker;
+import org.yusaki.lamdispensers.metrics.PluginMetrics;
+import org.yusaki.lamdispensers.replay.DispenseRecorder;
+import org.yusaki.lamdispensers.replay.ReplayDriver;
+import org.yusaki.lamdispensers.scheduler.SideExecutor;
+import org.yusaki.lamdispensers.scheduler.TaskScheduler;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
 import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryMXBean;
-import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+
+import javax.management.ObjectName;
 
 public class PerformanceMonitor implements CommandExecutor, TabCompleter {
+    private static final int MAX_LISTED_CHANGES = 20;
+    private static final String RECORDINGS_FOLDER = "recordings";
+    private static final int BENCHMARK_BLOCKS = 1000;
+
     private final LamDispensers plugin;
-    private final DispenserMiningHandler miningHandler;
+    private final FlightRecording flightRecording;
 
-    public PerformanceMonitor(LamDispensers plugin, DispenserMiningHandler miningHandler) {
+    public PerformanceMonitor(LamDispensers plugin) {
         this.plugin = plugin;
-        this.miningHandler = miningHandler;
+        this.flightRecording = new FlightRecording(plugin.getDataFolder());
     }
 
     @Override
@@ -40,10 +58,28 @@ public class PerformanceMonitor implements CommandExecutor, TabCompleter {
                 showMemoryUsage(sender);
                 break;
             case "tasks":
-                showActiveTasks(sender);
+                showActiveTasks(sender, args);
                 break;
             case "gc":
-                runGC(sender);
+                showHeapHistogram(sender);
+                break;
+            case "jfr":
+                handleFlightRecording(sender, args);
+                break;
+            case "rules":
+                showToolRules(sender);
+                break;
+            case "record":
+                handleRecording(sender, args);
+                break;
+            case "replay":
+                runReplay(sender, args);
+                break;
+            case "directory":
+                showDirectory(sender);
+                break;
+            case "bench":
+                runPlacementBenchmark(sender);
                 break;
             default:
                 showHelp(sender);
@@ -55,74 +91,427 @@ public class PerformanceMonitor implements CommandExecutor, TabCompleter {
 
     private void showHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== LamDispensers Performance Monitor ===");
-        sender.sendMessage(ChatColor.YELLOW + "/ldperf memory " + ChatColor.WHITE + "- Show memory usage");
-        sender.sendMessage(ChatColor.YELLOW + "/ldperf tasks " + ChatColor.WHITE + "- Show active mining tasks");
-        sender.sendMessage(ChatColor.YELLOW + "/ldperf gc " + ChatColor.WHITE + "- Run garbage collection");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf memory " + ChatColor.WHITE + "- Show plugin memory and allocation rates");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf tasks [summary|export] [page] [world=|region=|radius=] " + ChatColor.WHITE + "- Show active mining tasks");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf gc " + ChatColor.WHITE + "- Heap histogram of plugin classes (opt-in)");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf jfr <start|stop|dump> " + ChatColor.WHITE + "- Control a local flight recording");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf rules " + ChatColor.WHITE + "- Validate tool rules and show what the last reload changed");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf record <start|stop> " + ChatColor.WHITE + "- Record handled dispenses to a binary log");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf replay <file> " + ChatColor.WHITE + "- Replay a recorded log through the handler logic");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf directory " + ChatColor.WHITE + "- Known dispensers in loaded chunks, per region");
+        sender.sendMessage(ChatColor.YELLOW + "/ldperf bench " + ChatColor.WHITE + "- Time a " + BENCHMARK_BLOCKS + "-block placement batch above you");
     }
 
     private void showMemoryUsage(CommandSender sender) {
-        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
-        MemoryUsage heapUsage = memoryBean.getHeapMemoryUsage();
-        MemoryUsage nonHeapUsage = memoryBean.getNonHeapMemoryUsage();
-
-        sender.sendMessage(ChatColor.GOLD + "=== Memory Usage ===");
-        sender.sendMessage(ChatColor.YELLOW + "Heap Memory:");
-        sender.sendMessage(ChatColor.WHITE + "  Used: " + formatBytes(heapUsage.getUsed()));
-        sender.sendMessage(ChatColor.WHITE + "  Committed: " + formatBytes(heapUsage.getCommitted()));
-        sender.sendMessage(ChatColor.WHITE + "  Max: " + formatBytes(heapUsage.getMax()));
-        
-        sender.sendMessage(ChatColor.YELLOW + "Non-Heap Memory:");
-        sender.sendMessage(ChatColor.WHITE + "  Used: " + formatBytes(nonHeapUsage.getUsed()));
-        sender.sendMessage(ChatColor.WHITE + "  Committed: " + formatBytes(nonHeapUsage.getCommitted()));
-        
-        Runtime runtime = Runtime.getRuntime();
-        sender.sendMessage(ChatColor.YELLOW + "Total Memory: " + ChatColor.WHITE + formatBytes(runtime.totalMemory()));
-        sender.sendMessage(ChatColor.YELLOW + "Free Memory: " + ChatColor.WHITE + formatBytes(runtime.freeMemory()));
-    }
-
-    private void showActiveTasks(CommandSender sender) {
-        sender.sendMessage(ChatColor.GOLD + "=== Active Tasks ===");
-        
-        // Show total counts
-        sender.sendMessage(ChatColor.YELLOW + "Active Mining Operations: " + ChatColor.WHITE + miningHandler.getActiveMiningCount());
-        sender.sendMessage(ChatColor.YELLOW + "Active Tool Operations: " + ChatColor.WHITE + miningHandler.getActiveToolCount());
-        
-        // Show detailed mining operations
-        sender.sendMessage(ChatColor.YELLOW + "\nActive Mining Locations:");
-        for (Location loc : miningHandler.getActiveMiningLocations()) {
-            sender.sendMessage(ChatColor.WHITE + "  - " + formatLocation(loc));
-        }
-        
-        // Show detailed tool operations
-        sender.sendMessage(ChatColor.YELLOW + "\nActive Tool Operations:");
-        for (String toolOp : miningHandler.getActiveToolOperations()) {
-            sender.sendMessage(ChatColor.WHITE + "  - " + formatToolOperation(toolOp));
-        }
-    }
-
-    private String formatLocation(Location loc) {
-        return String.format("World: %s, X: %d, Y: %d, Z: %d", 
-            loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
-    }
-
-    private String formatToolOperation(String toolOp) {
-        String[] parts = toolOp.split(":");
-        String location = parts[0].substring(parts[0].indexOf("{")); // Clean up the Location toString
-        String tool = parts[1].replace("_", " ").toLowerCase();
-        return "Location: " + location + ", Tool: " + tool;
-    }
-
-    private void runGC(CommandSender sender) {
-        sender.sendMessage(ChatColor.YELLOW + "Running garbage collection...");
-        long memBefore = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-        
-        System.gc();
-        
-        long memAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-        long freed = memBefore - memAfter;
-        
-        sender.sendMessage(ChatColor.GREEN + "Garbage collection complete!");
-        sender.sendMessage(ChatColor.YELLOW + "Memory freed: " + ChatColor.WHITE + formatBytes(freed));
+        DispenserMiningHandler mining = plugin.getMiningHandler();
+        DispenserPlacementHandler placement = plugin.getPlacementHandler();
+        ToolRules rules = plugin.getToolRules();
+        PluginMetrics metrics = plugin.getMetrics();
+        long total = 0;
+
+        sender.sendMessage(ChatColor.GOLD + "=== LamDispensers Memory ===");
+        if (mining != null) {
+            long bytes = mining.estimateRetainedBytes();
+            total += bytes;
+            sender.sendMessage(ChatColor.YELLOW + "Mining registries: " + ChatColor.WHITE + mining.getActiveMiningCount()
+                    + " operations, " + mining.getActiveToolCount() + " busy tools, ~" + formatBytes(bytes));
+        }
+        if (placement != null) {
+            long bytes = placement.estimateRetainedBytes();
+            total += bytes;
+            sender.sendMessage(ChatColor.YELLOW + "Placement queue and tables: " + ChatColor.WHITE
+                    + placement.getQueuedPlacementCount() + " queued, ~" + formatBytes(bytes));
+        }
+
+        long rulesBytes = rules.estimateRetainedBytes();
+        total += rulesBytes;
+        sender.sendMessage(ChatColor.YELLOW + "Tool rules table: " + ChatColor.WHITE + "~" + formatBytes(rulesBytes));
+
+        DispenserDirectory directory = plugin.getDispenserDirectory();
+        long directoryBytes = directory.estimateRetainedBytes();
+        total += directoryBytes;
+        sender.sendMessage(ChatColor.YELLOW + "Dispenser directory: " + ChatColor.WHITE + directory.getChunkCount()
+                + " chunks, ~" + formatBytes(directoryBytes));
+
+        long metricsBytes = metrics.estimateRetainedBytes();
+        total += metricsBytes;
+        sender.sendMessage(ChatColor.YELLOW + "Metrics: " + ChatColor.WHITE + metrics.getWorldCount() + " worlds, ~" + formatBytes(metricsBytes));
+
+        sender.sendMessage(ChatColor.YELLOW + "Estimated heap total: " + ChatColor.WHITE + "~" + formatBytes(total));
+
+        long mapped = plugin.getDispenseRecorder().getMappedBytes();
+        if (mapped > 0) {
+            sender.sendMessage(ChatColor.YELLOW + "Dispense recorder (off-heap): " + ChatColor.WHITE + formatBytes(mapped));
+        }
+
+        if (!AllocationTracker.isSupported()) {
+            sender.sendMessage(ChatColor.GRAY + "Per-thread allocation counters are not available on this JVM.");
+            return;
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Allocations:");
+        showAllocations(sender, "mining", metrics.getMiningAllocations());
+        showAllocations(sender, "placement", metrics.getPlacementAllocations());
+    }
+
+    private void showDirectory(CommandSender sender) {
+        DispenserDirectory directory = plugin.getDispenserDirectory();
+        runOnSide(sender, () -> {
+            List<DispenserDirectory.RegionCount> regions = directory.countByRegion();
+            List<String> lines = new ArrayList<>();
+            lines.add(ChatColor.GOLD + "=== Dispenser Directory ===");
+            lines.add(ChatColor.YELLOW + "Mining: " + ChatColor.WHITE + directory.getDispenserCount(DispenserDirectory.Mode.MINING)
+                    + ChatColor.YELLOW + "  Placement: " + ChatColor.WHITE + directory.getDispenserCount(DispenserDirectory.Mode.PLACEMENT)
+                    + ChatColor.YELLOW + "  Chunks: " + ChatColor.WHITE + directory.getChunkCount());
+            lines.add(ChatColor.YELLOW + "Busiest regions (32x32 chunks):");
+            for (int i = 0; i < Math.min(regions.size(), TaskReport.PAGE_SIZE); i++) {
+                DispenserDirectory.RegionCount region = regions.get(i);
+                lines.add(ChatColor.WHITE + "  " + region.world() + " region " + region.regionX() + ", " + region.regionZ()
+                        + ChatColor.GRAY + ": " + ChatColor.WHITE + region.dispensers() + " dispensers, "
+                        + region.mining() + " mining, " + region.placement() + " placement");
+            }
+            if (regions.isEmpty()) {
+                lines.add(ChatColor.GRAY + "  No dispensers known in loaded chunks.");
+            }
+            sender.sendMessage(lines.toArray(new String[0]));
+        });
+    }
+
+    /**
+     * Places a synthetic batch in the air above the player, through the placement code batches
+     * use and with per-block physics, so the two can be compared between versions.
+     */
+    private void runPlacementBenchmark(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(ChatColor.RED + "The placement benchmark builds above you, run it as a player.");
+            return;
+        }
+        DispenserPlacementHandler placement = plugin.getPlacementHandler();
+        if (placement == null) {
+            sender.sendMessage(ChatColor.RED + "The placement module is disabled.");
+            return;
+        }
+
+        Location origin = player.getLocation();
+        plugin.getTaskScheduler().run(origin, () -> {
+            DispenserPlacementHandler.PlacementBenchmark result = placement.benchmarkPlacement(origin, BENCHMARK_BLOCKS);
+            if (result == null) {
+                sender.sendMessage(ChatColor.RED + "Needs a loaded cube of open air starting 3 blocks above you.");
+                return;
+            }
+            sender.sendMessage(ChatColor.GOLD + "=== Placement Benchmark (" + result.blocks() + " blocks) ===",
+                    ChatColor.YELLOW + "Batch: " + ChatColor.WHITE + String.format("%.2f ms", result.batchNanos() / 1_000_000.0)
+                            + ChatColor.GRAY + " (" + result.deferred() + " deferred to physics)",
+                    ChatColor.YELLOW + "Physics per block: " + ChatColor.WHITE + String.format("%.2f ms", result.physicsNanos() / 1_000_000.0));
+        });
+    }
+
+    private void showAllocations(CommandSender sender, String handler, AllocationTracker tracker) {
+        long calls = tracker.getCalls();
+        sender.sendMessage(ChatColor.WHITE + "  " + handler + ": " + formatBytes(tracker.getBytes()) + " total, "
+                + formatBytes((long) tracker.getBytesPerSecond()) + "/s, "
+                + formatBytes(calls > 0 ? tracker.getBytes() / calls : 0) + " per call");
+    }
+
+    private void showActiveTasks(CommandSender sender, String[] args) {
+        DispenserMiningHandler mining = plugin.getMiningHandler();
+        if (mining == null) {
+            sender.sendMessage(ChatColor.RED + "The mining module is disabled.");
+            return;
+        }
+
+        TaskReport.Query query;
+        try {
+            query = TaskReport.Query.parse(sender, args);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatColor.RED + "Invalid option: " + e.getMessage());
+            sender.sendMessage(ChatColor.RED + "Usage: /ldperf tasks [summary|export] [page] [world=<name>] [region=<x>,<z>] [radius=<blocks>]");
+            return;
+        }
+
+        // Copy the registries here, sorting, grouping and formatting happen off this thread
+        Set<Location> locations = mining.getActiveMiningLocations();
+        Set<String> toolOperations = query.export ? mining.getActiveToolOperations() : null;
+        int toolCount = mining.getActiveToolCount();
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        int pendingTasks = scheduler.getPendingCount();
+        SideExecutor side = plugin.getSideExecutor();
+
+        runOnSide(sender, () -> {
+            TaskReport report = TaskReport.build(locations, query);
+            if (query.export) {
+                exportTasks(sender, report, toolOperations);
+                return;
+            }
+
+            sender.sendMessage(ChatColor.GOLD + "=== Active Tasks ===",
+                    ChatColor.YELLOW + "Active Mining Operations: " + ChatColor.WHITE + locations.size()
+                            + ChatColor.YELLOW + "  Active Tool Operations: " + ChatColor.WHITE + toolCount,
+                    ChatColor.YELLOW + "Scheduler: " + ChatColor.WHITE + scheduler.getName()
+                            + (pendingTasks >= 0 ? ChatColor.YELLOW + "  Pending: " + ChatColor.WHITE + pendingTasks : ""),
+                    ChatColor.YELLOW + "Background tasks: " + ChatColor.WHITE + side.getRunningCount() + "/" + side.getCapacity()
+                            + ChatColor.YELLOW + "  Refused: " + ChatColor.WHITE + side.getRejectedCount());
+            report.sendPage(sender, query.page, query.summary);
+        });
+    }
+
+    /**
+     * Hands report work to the side executor, telling the sender to retry when it is full.
+     */
+    private void runOnSide(CommandSender sender, Runnable task) {
+        if (!plugin.getSideExecutor().execute(task)) {
+            sender.sendMessage(ChatColor.RED + "Too many reports are running, try again in a moment.");
+        }
+    }
+
+    private void exportTasks(CommandSender sender, TaskReport report, Set<String> toolOperations) {
+        File folder = plugin.getDataFolder();
+        folder.mkdirs();
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File file = new File(folder, "tasks-" + stamp + ".txt");
+        try {
+            report.export(file.toPath(), toolOperations);
+            sender.sendMessage(ChatColor.GREEN + "Exported " + report.size() + " operations to " + ChatColor.WHITE + file.getName());
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Task export failed: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Heap histogram restricted to plugin classes. Walking the heap still pauses the server
+     * briefly, so it only runs when memory.allow-heap-histogram is enabled. The -all flag
+     * counts unreachable objects too instead of forcing a full GC first.
+     */
+    private void showHeapHistogram(CommandSender sender) {
+        if (!plugin.getConfig().getBoolean("memory.allow-heap-histogram", false)) {
+            sender.sendMessage(ChatColor.RED + "Heap histograms are disabled. Set memory.allow-heap-histogram to true to use this.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.YELLOW + "Collecting heap histogram of plugin classes...");
+        runOnSide(sender, () -> {
+            try {
+                String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                        "gcClassHistogram",
+                        new Object[]{new String[]{"-all"}},
+                        new String[]{String[].class.getName()});
+
+                String packagePrefix = LamDispensers.class.getPackageName();
+                sender.sendMessage(ChatColor.GOLD + "=== Plugin Heap Histogram ===");
+                int shown = 0;
+                for (String line : histogram.split("\n")) {
+                    if (!line.contains(packagePrefix)) continue;
+                    // "   num:  #instances  #bytes  class name (module)"
+                    String[] columns = line.trim().split("\\s+");
+                    if (columns.length < 4) continue;
+                    String className = histogramClassName(line);
+                    if (!className.startsWith(packagePrefix + ".")) continue;
+                    className = className.substring(packagePrefix.length() + 1);
+                    sender.sendMessage(ChatColor.WHITE + "  " + className + ": " + columns[1] + " instances, "
+                            + formatBytes(Long.parseLong(columns[2])));
+                    shown++;
+                }
+                if (shown == 0) {
+                    sender.sendMessage(ChatColor.GRAY + "  No plugin objects on the heap.");
+                }
+            } catch (Exception e) {
+                sender.sendMessage(ChatColor.RED + "Heap histogram failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * The class name column of a histogram line: the last token once a trailing
+     * {@code (module)} is cut off, with array descriptors like {@code [[Lfoo.Bar;} turned
+     * into {@code foo.Bar[][]}.
+     */
+    static String histogramClassName(String line) {
+        String trimmed = line.trim();
+        int module = trimmed.lastIndexOf(" (");
+        if (module > 0 && trimmed.endsWith(")")) {
+            trimmed = trimmed.substring(0, module).trim();
+        }
+        String name = trimmed.substring(trimmed.lastIndexOf(' ') + 1);
+
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions == 0) return name;
+        if (!name.startsWith("L", dimensions) || !name.endsWith(";")) return name;
+        return name.substring(dimensions + 1, name.length() - 1) + "[]".repeat(dimensions);
+    }
+
+    private void showToolRules(CommandSender sender) {
+        ToolRules rules = plugin.getToolRules();
+        sender.sendMessage(ChatColor.GOLD + "=== Tool Rules ===");
+        for (ToolRules.ToolType type : ToolRules.ToolType.values()) {
+            sender.sendMessage(ChatColor.YELLOW + type.name().toLowerCase() + ": " + ChatColor.WHITE + rules.countBlocks(type) + " blocks");
+        }
+
+        List<String> warnings = rules.getWarnings();
+        if (warnings.isEmpty()) {
+            sender.sendMessage(ChatColor.GREEN + "No problems found in tool-rules.");
+        } else {
+            sender.sendMessage(ChatColor.RED + "Problems in tool-rules:");
+            for (String warning : warnings) {
+                sender.sendMessage(ChatColor.WHITE + "  - " + warning);
+            }
+        }
+
+        List<String> changes = plugin.getToolRuleChanges();
+        sender.sendMessage(ChatColor.YELLOW + "Changed by last reload: " + ChatColor.WHITE + changes.size());
+        int shown = Math.min(changes.size(), MAX_LISTED_CHANGES);
+        for (int i = 0; i < shown; i++) {
+            sender.sendMessage(ChatColor.WHITE + "  - " + changes.get(i));
+        }
+        if (changes.size() > shown) {
+            sender.sendMessage(ChatColor.GRAY + "  ... and " + (changes.size() - shown) + " more");
+        }
+    }
+
+    private void handleRecording(CommandSender sender, String[] args) {
+        DispenseRecorder recorder = plugin.getDispenseRecorder();
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /ldperf record <start|stop>");
+            return;
+        }
+
+        try {
+            switch (args[1].toLowerCase()) {
+                case "start":
+                    if (recorder.isRecording()) {
+                        sender.sendMessage(ChatColor.RED + "Already recording to " + recorder.getFile().getFileName());
+                        return;
+                    }
+                    File folder = new File(plugin.getDataFolder(), RECORDINGS_FOLDER);
+                    folder.mkdirs();
+                    String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+                    recorder.start(new File(folder, "dispenses-" + stamp + ".ldlog").toPath());
+                    sender.sendMessage(ChatColor.GREEN + "Recording dispenses to " + ChatColor.WHITE + recorder.getFile().getFileName());
+                    break;
+                case "stop":
+                    if (!recorder.isRecording()) {
+                        sender.sendMessage(ChatColor.RED + "No dispense recording is running.");
+                        return;
+                    }
+                    recorder.stop();
+                    sender.sendMessage(ChatColor.GREEN + "Recorded " + recorder.getRecordCount() + " dispenses to "
+                            + ChatColor.WHITE + recorder.getFile().getFileName());
+                    break;
+                default:
+                    sender.sendMessage(ChatColor.RED + "Usage: /ldperf record <start|stop>");
+                    break;
+            }
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Dispense recording failed: " + e.getMessage());
+            plugin.getLogger().warning("Dispense recording failed: " + e.getMessage());
+        }
+    }
+
+    private void runReplay(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /ldperf replay <file>");
+            return;
+        }
+
+        File folder = new File(plugin.getDataFolder(), RECORDINGS_FOLDER);
+        File file = new File(folder, args[1]);
+        if (!file.isFile() || !file.getParentFile().equals(folder)) {
+            sender.sendMessage(ChatColor.RED + "No recording named " + args[1] + " in " + RECORDINGS_FOLDER + "/");
+            return;
+        }
+
+        ToolRules rules = plugin.getToolRules();
+        DispenserMiningHandler mining = plugin.getMiningHandler();
+        boolean harvestEnabled = mining != null && mining.isHarvestEnabled();
+        DispenserPlacementHandler placement = plugin.getPlacementHandler();
+        PlacementTables liveTables = placement != null ? placement.getTables() : null;
+        sender.sendMessage(ChatColor.YELLOW + "Replaying " + file.getName() + "...");
+
+        runOnSide(sender, () -> {
+            // Borrow the live tables, only a disabled placement module makes the replay build its own
+            PlacementTables tables = liveTables != null ? liveTables : PlacementTables.build();
+            ReplayDriver driver = new ReplayDriver(rules, harvestEnabled, tables::admit);
+            try {
+                ReplayDriver.Result result = driver.replay(file.toPath());
+                sender.sendMessage(ChatColor.GOLD + "=== Replay of " + file.getName() + " ===");
+                sender.sendMessage(ChatColor.YELLOW + "Records: " + ChatColor.WHITE + result.records()
+                        + ChatColor.YELLOW + " in " + ChatColor.WHITE + String.format("%.1f ms", result.elapsedNanos() / 1_000_000.0)
+                        + ChatColor.YELLOW + " (" + ChatColor.WHITE + String.format("%.0f/s", result.recordsPerSecond()) + ChatColor.YELLOW + ")");
+                for (DispenseRecorder.Outcome outcome : DispenseRecorder.Outcome.values()) {
+                    long recorded = result.recorded().getOrDefault(outcome, 0L);
+                    long replayed = result.replayed().getOrDefault(outcome, 0L);
+                    if (recorded == 0 && replayed == 0) continue;
+                    sender.sendMessage(ChatColor.WHITE + "  " + outcome.name().toLowerCase() + ": "
+                            + recorded + " recorded, " + replayed + " replayed");
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Outcome mismatches: " + ChatColor.WHITE + result.mismatches());
+                sender.sendMessage(ChatColor.YELLOW + "Simulated mining time: " + ChatColor.WHITE + String.format("%.1f s", result.miningSeconds()));
+            } catch (IOException e) {
+                sender.sendMessage(ChatColor.RED + "Replay failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void handleFlightRecording(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /ldperf jfr <start|stop|dump>");
+            return;
+        }
+
+        try {
+            switch (args[1].toLowerCase()) {
+                case "start":
+                    if (flightRecording.start()) {
+                        sender.sendMessage(ChatColor.GREEN + "Flight recording started.");
+                    } else {
+                        sender.sendMessage(ChatColor.RED + "A flight recording is already running.");
+                    }
+                    break;
+                case "stop":
+                    Path stopped = flightRecording.stop();
+                    if (stopped == null) {
+                        sender.sendMessage(ChatColor.RED + "No flight recording is running.");
+                    } else {
+                        sender.sendMessage(ChatColor.GREEN + "Flight recording stopped and written to " + ChatColor.WHITE + stopped.getFileName());
+                    }
+                    break;
+                case "dump":
+                    Path dumped = flightRecording.dump();
+                    if (dumped == null) {
+                        sender.sendMessage(ChatColor.RED + "No flight recording is running.");
+                    } else {
+                        sender.sendMessage(ChatColor.GREEN + "Flight recording dumped to " + ChatColor.WHITE + dumped.getFileName());
+                    }
+                    break;
+                default:
+                    sender.sendMessage(ChatColor.RED + "Usage: /ldperf jfr <start|stop|dump>");
+                    break;
+            }
+        } catch (IOException | IllegalStateException e) {
+            sender.sendMessage(ChatColor.RED + "Flight recording failed: " + e.getMessage());
+            plugin.getLogger().warning("Flight recording failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops any running dispense or flight recording, writing out what it captured so far.
+     */
+    public void shutdown() {
+        try {
+            plugin.getDispenseRecorder().stop();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not close dispense recording on shutdown: " + e.getMessage());
+        }
+
+        if (!flightRecording.isRunning()) return;
+        try {
+            flightRecording.stop();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write flight recording on shutdown: " + e.getMessage());
+        }
     }
 
     private String formatBytes(long bytes) {
@@ -135,10 +524,35 @@ public class PerformanceMonitor implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            List<String> completions = new ArrayList<>(Arrays.asList("memory", "tasks", "gc", "help"));
+            List<String> completions = new ArrayList<>(Arrays.asList("memory", "tasks", "gc", "jfr", "rules", "record", "replay", "directory", "bench", "help"));
             completions.removeIf(s -> !s.toLowerCase().startsWith(args[0].toLowerCase()));
             return completions;
         }
+        if (args.length >= 2 && args[0].equalsIgnoreCase("tasks")) {
+            List<String> completions = new ArrayList<>(Arrays.asList("summary", "export", "world=", "region=", "radius="));
+            completions.removeIf(s -> !s.startsWith(args[args.length - 1].toLowerCase()));
+            return completions;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("record")) {
+            List<String> completions = new ArrayList<>(Arrays.asList("start", "stop"));
+            completions.removeIf(s -> !s.startsWith(args[1].toLowerCase()));
+            return completions;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("replay")) {
+            List<String> completions = new ArrayList<>();
+            String[] files = new File(plugin.getDataFolder(), RECORDINGS_FOLDER).list((dir, name) -> name.endsWith(".ldlog"));
+            if (files != null) {
+                for (String name : files) {
+                    if (name.startsWith(args[1])) completions.add(name);
+                }
+            }
+            return completions;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("jfr")) {
+            List<String> completions = new ArrayList<>(Arrays.asList("start", "stop", "dump"));
+            completions.removeIf(s -> !s.startsWith(args[1].toLowerCase()));
+            return completions;
+        }
         return new ArrayList<>();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,143 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Material;
+import org.yusaki.lamdispensers.replay.DispenseRecorder;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The block tables of the placement handler: what may be dispensed as a block, what it may
+ * replace and what may go in without physics. Built once from the material registry and
+ * never changed afterwards, so the handler and the replay share an instance freely.
+ */
+public final class PlacementTables {
+
+    // Full cubes with no state that depends on their neighbours. Anything that changes shape,
+    // faces, instrument, snowiness or power when a neighbour appears is left out on purpose.
+    private static final Set<String> INERT_NAMES = Set.of(
+            "STONE", "COBBLESTONE", "MOSSY_COBBLESTONE", "SMOOTH_STONE", "GRANITE", "POLISHED_GRANITE",
+            "DIORITE", "POLISHED_DIORITE", "ANDESITE", "POLISHED_ANDESITE", "DEEPSLATE", "COBBLED_DEEPSLATE",
+            "POLISHED_DEEPSLATE", "TUFF", "CALCITE", "DRIPSTONE_BLOCK", "DIRT", "COARSE_DIRT", "ROOTED_DIRT",
+            "SANDSTONE", "CUT_SANDSTONE", "SMOOTH_SANDSTONE", "CHISELED_SANDSTONE",
+            "RED_SANDSTONE", "CUT_RED_SANDSTONE", "SMOOTH_RED_SANDSTONE", "CHISELED_RED_SANDSTONE",
+            "NETHERRACK", "END_STONE", "OBSIDIAN", "CRYING_OBSIDIAN", "BLACKSTONE", "POLISHED_BLACKSTONE",
+            "BASALT", "POLISHED_BASALT", "SMOOTH_BASALT", "QUARTZ_BLOCK", "SMOOTH_QUARTZ", "QUARTZ_PILLAR",
+            "PURPUR_BLOCK", "PURPUR_PILLAR", "PRISMARINE", "DARK_PRISMARINE", "BRICKS", "SNOW_BLOCK",
+            "PACKED_ICE", "BLUE_ICE", "HAY_BLOCK", "BONE_BLOCK", "CLAY", "MUD", "PACKED_MUD",
+            "IRON_BLOCK", "GOLD_BLOCK", "DIAMOND_BLOCK", "EMERALD_BLOCK", "LAPIS_BLOCK", "COAL_BLOCK",
+            "NETHERITE_BLOCK", "AMETHYST_BLOCK", "RAW_IRON_BLOCK", "RAW_GOLD_BLOCK", "RAW_COPPER_BLOCK",
+            "CRIMSON_STEM", "WARPED_STEM", "STRIPPED_CRIMSON_STEM", "STRIPPED_WARPED_STEM"
+    );
+    private static final List<String> INERT_SUFFIXES = List.of(
+            "_PLANKS", "_LOG", "_WOOD", "_HYPHAE", "_WOOL", "_CONCRETE", "_TERRACOTTA", "_ORE", "_BRICKS"
+    );
+
+    private final Set<Material> replaceable = EnumSet.noneOf(Material.class);
+    private final Set<Material> placeableBlocks = EnumSet.noneOf(Material.class);
+    private final Set<Material> inertBlocks = EnumSet.noneOf(Material.class);
+
+    private PlacementTables() {
+    }
+
+    public static PlacementTables build() {
+        PlacementTables tables = new PlacementTables();
+        addReplaceableBlocks(tables.replaceable);
+        addPlaceableBlocks(tables.placeableBlocks);
+        addInertBlocks(tables.inertBlocks);
+        return tables;
+    }
+
+    private static void addReplaceableBlocks(Set<Material> replaceable) {
+        replaceable.add(Material.AIR);
+        replaceable.add(Material.WATER);
+        replaceable.add(Material.LAVA);
+    }
+
+    private static void addPlaceableBlocks(Set<Material> placeableBlocks) {
+        // Add all solid blocks
+        for (Material material : Material.values()) {
+            if (material.isBlock() && material.isSolid()) {
+                placeableBlocks.add(material);
+            }
+        }
+
+        // Remove TNT and Shulker Boxes
+        placeableBlocks.remove(Material.TNT);
+        for (Material material : Material.values()) {
+            if (material.name().endsWith("SHULKER_BOX")) {
+                placeableBlocks.remove(material);
+            }
+        }
+
+        // Add specific transparent blocks
+        Material[] transparentBlocks = {
+                // Carpets
+                Material.WHITE_CARPET, Material.ORANGE_CARPET, Material.MAGENTA_CARPET,
+                Material.LIGHT_BLUE_CARPET, Material.YELLOW_CARPET, Material.LIME_CARPET,
+                Material.PINK_CARPET, Material.GRAY_CARPET, Material.LIGHT_GRAY_CARPET,
+                Material.CYAN_CARPET, Material.PURPLE_CARPET, Material.BLUE_CARPET,
+                Material.BROWN_CARPET, Material.GREEN_CARPET, Material.RED_CARPET,
+                Material.BLACK_CARPET,
+
+                // Rails
+                Material.RAIL, Material.POWERED_RAIL, Material.DETECTOR_RAIL,
+                Material.ACTIVATOR_RAIL,
+
+                // Saplings
+                Material.OAK_SAPLING, Material.SPRUCE_SAPLING, Material.BIRCH_SAPLING,
+                Material.JUNGLE_SAPLING, Material.ACACIA_SAPLING, Material.DARK_OAK_SAPLING,
+                Material.MANGROVE_PROPAGULE,Material.CHERRY_SAPLING,
+
+                // Other common transparent blocks
+                Material.TORCH, Material.REDSTONE_TORCH, Material.LEVER, Material.STONE_BUTTON,
+                Material.OAK_BUTTON, Material.SPRUCE_BUTTON, Material.BIRCH_BUTTON,
+                Material.JUNGLE_BUTTON, Material.ACACIA_BUTTON, Material.DARK_OAK_BUTTON,
+                Material.CRIMSON_BUTTON, Material.WARPED_BUTTON, Material.REPEATER,
+                Material.COMPARATOR, Material.REDSTONE_WIRE
+        };
+
+        placeableBlocks.addAll(Set.of(transparentBlocks));
+    }
+
+    private static void addInertBlocks(Set<Material> inertBlocks) {
+        // Only allowlisted full cubes, isOccluding alone lets note blocks, grass and mushroom blocks through
+        for (Material material : Material.values()) {
+            if (!material.isBlock() || !material.isSolid() || material.hasGravity()) continue;
+
+            String name = material.name();
+            if (INERT_NAMES.contains(name) || INERT_SUFFIXES.stream().anyMatch(name::endsWith)) {
+                inertBlocks.add(material);
+            }
+        }
+    }
+
+    /**
+     * Decision for an item dispensed at a block of the given type, without touching the world.
+     * Returns null for items the placement handler leaves to vanilla.
+     */
+    public DispenseRecorder.Outcome admit(Material item, Material front) {
+        if (!placeableBlocks.contains(item)) return null;
+        return replaceable.contains(front) ? DispenseRecorder.Outcome.PLACEMENT_QUEUED : DispenseRecorder.Outcome.NO_TARGET;
+    }
+
+    public boolean isReplaceable(Material material) {
+        return replaceable.contains(material);
+    }
+
+    public boolean isPlaceable(Material material) {
+        return placeableBlocks.contains(material);
+    }
+
+    public boolean isInert(Material material) {
+        return inertBlocks.contains(material);
+    }
+
+    /**
+     * Heap held by the tables, three EnumSet bit vectors.
+     */
+    long estimateRetainedBytes() {
+        return 3L * (Material.values().length / 8 + 16);
+    }
+}
@@ -0,0 +1,198 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filtered, sorted view of the active mining operations behind /ldperf tasks.
+ * Built from a snapshot of the registries so it can be assembled off the command thread.
+ */
+class TaskReport {
+    static final int PAGE_SIZE = 10;
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::world)
+            .thenComparingInt(Entry::x)
+            .thenComparingInt(Entry::z)
+            .thenComparingInt(Entry::y);
+
+    record Entry(String world, int x, int y, int z) {
+        long chunkKey() {
+            return ((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL);
+        }
+    }
+
+    record ChunkCount(String world, int chunkX, int chunkZ, int count) {
+    }
+
+    /**
+     * Options parsed from the arguments after "tasks":
+     * {@code [summary|export] [page] [world=<name>] [region=<x>,<z>] [radius=<blocks>]}.
+     */
+    static final class Query {
+        boolean summary;
+        boolean export;
+        int page = 1;
+        String world;
+        Integer regionX;
+        Integer regionZ;
+        Location center;
+        double radiusSquared = -1;
+
+        static Query parse(CommandSender sender, String[] args) {
+            Query query = new Query();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i].toLowerCase();
+                if (arg.equals("summary")) {
+                    query.summary = true;
+                } else if (arg.equals("export")) {
+                    query.export = true;
+                } else if (arg.startsWith("world=")) {
+                    query.world = args[i].substring("world=".length());
+                } else if (arg.startsWith("region=")) {
+                    String[] coords = arg.substring("region=".length()).split(",");
+                    if (coords.length != 2) {
+                        throw new IllegalArgumentException("region needs two coordinates, e.g. region=0,-1");
+                    }
+                    query.regionX = Integer.parseInt(coords[0].trim());
+                    query.regionZ = Integer.parseInt(coords[1].trim());
+                } else if (arg.startsWith("radius=")) {
+                    if (!(sender instanceof Player)) {
+                        throw new IllegalArgumentException("radius can only be used by players");
+                    }
+                    double radius = Double.parseDouble(arg.substring("radius=".length()));
+                    query.center = ((Player) sender).getLocation();
+                    query.radiusSquared = radius * radius;
+                    if (query.world == null && query.center.getWorld() != null) {
+                        query.world = query.center.getWorld().getName();
+                    }
+                } else {
+                    query.page = Math.max(1, Integer.parseInt(arg));
+                }
+            }
+            // The radius is measured from the player, so it can only cover the player's own world
+            if (query.center != null && query.center.getWorld() != null
+                    && !query.center.getWorld().getName().equals(query.world)) {
+                throw new IllegalArgumentException("radius only works in your own world, not in world=" + query.world);
+            }
+            return query;
+        }
+
+        boolean matches(Location location) {
+            if (world != null && (location.getWorld() == null || !location.getWorld().getName().equals(world))) {
+                return false;
+            }
+            // Region file coordinates, 32x32 chunks each
+            if (regionX != null && ((location.getBlockX() >> 9) != regionX || (location.getBlockZ() >> 9) != regionZ)) {
+                return false;
+            }
+            if (radiusSquared < 0) return true;
+            // distanceSquared throws across worlds
+            return location.getWorld() != null && location.getWorld().equals(center.getWorld())
+                    && location.distanceSquared(center) <= radiusSquared;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private TaskReport(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    static TaskReport build(Set<Location> locations, Query query) {
+        List<Entry> entries = new ArrayList<>();
+        for (Location location : locations) {
+            if (!query.matches(location)) continue;
+            String world = location.getWorld() != null ? location.getWorld().getName() : "?";
+            entries.add(new Entry(world, location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        }
+        entries.sort(ORDER);
+        return new TaskReport(entries);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    List<ChunkCount> groupByChunk() {
+        Map<String, Map<Long, int[]>> counts = new HashMap<>();
+        for (Entry entry : entries) {
+            counts.computeIfAbsent(entry.world(), w -> new HashMap<>())
+                    .computeIfAbsent(entry.chunkKey(), k -> new int[1])[0]++;
+        }
+
+        List<ChunkCount> chunks = new ArrayList<>();
+        counts.forEach((world, byChunk) -> byChunk.forEach((key, count) ->
+                chunks.add(new ChunkCount(world, (int) (key >> 32), (int) (long) key, count[0]))));
+        chunks.sort(Comparator.comparingInt(ChunkCount::count).reversed()
+                .thenComparing(ChunkCount::world)
+                .thenComparingInt(ChunkCount::chunkX)
+                .thenComparingInt(ChunkCount::chunkZ));
+        return chunks;
+    }
+
+    /**
+     * Sends one page as a single multi-line message instead of one message per entry.
+     */
+    void sendPage(CommandSender sender, int page, boolean summary) {
+        List<String> lines = new ArrayList<>(PAGE_SIZE + 1);
+        int total;
+        if (summary) {
+            List<ChunkCount> chunks = groupByChunk();
+            total = chunks.size();
+            int from = (Math.min(page, pageCount(total)) - 1) * PAGE_SIZE;
+            for (int i = from; i < Math.min(total, from + PAGE_SIZE); i++) {
+                ChunkCount chunk = chunks.get(i);
+                lines.add(ChatColor.WHITE + "  " + chunk.world() + " chunk " + chunk.chunkX() + ", " + chunk.chunkZ()
+                        + ChatColor.GRAY + " (blocks " + (chunk.chunkX() << 4) + ", " + (chunk.chunkZ() << 4) + "): "
+                        + ChatColor.WHITE + chunk.count());
+            }
+        } else {
+            total = entries.size();
+            int from = (Math.min(page, pageCount(total)) - 1) * PAGE_SIZE;
+            for (int i = from; i < Math.min(total, from + PAGE_SIZE); i++) {
+                Entry entry = entries.get(i);
+                lines.add(ChatColor.WHITE + "  " + entry.world() + " " + entry.x() + ", " + entry.y() + ", " + entry.z());
+            }
+        }
+
+        int pages = pageCount(total);
+        lines.add(0, ChatColor.YELLOW + (summary ? "Chunks with active operations" : "Active mining locations")
+                + " (page " + Math.min(page, pages) + "/" + pages + ", " + total + " matching):");
+        sender.sendMessage(lines.toArray(new String[0]));
+    }
+
+    void export(Path file, Set<String> toolOperations) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Active mining locations: " + entries.size());
+            writer.newLine();
+            for (Entry entry : entries) {
+                writer.write(entry.world() + " " + entry.x() + " " + entry.y() + " " + entry.z());
+                writer.newLine();
+            }
+            writer.write("# Active tool operations: " + toolOperations.size());
+            writer.newLine();
+            for (String toolOperation : toolOperations) {
+                writer.write(toolOperation);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static int pageCount(int total) {
+        return Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+}
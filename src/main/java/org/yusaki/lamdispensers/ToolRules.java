@@ -0,0 +1,256 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tool/block compatibility compiled into flat tables indexed by {@link Material#ordinal()}.
+ * The vanilla mineable and needs-tool tags form the base, the tool-rules section of
+ * config.yml adds or removes blocks per tool type and overrides harvest tiers.
+ * Instances are immutable, a reload compiles a new one and swaps it in.
+ */
+public final class ToolRules {
+
+    public enum ToolType {
+        PICKAXE("_PICKAXE", Tag.MINEABLE_PICKAXE),
+        AXE("_AXE", Tag.MINEABLE_AXE),
+        SHOVEL("_SHOVEL", Tag.MINEABLE_SHOVEL),
+        HOE("_HOE", Tag.MINEABLE_HOE);
+
+        private final String suffix;
+        private final Tag<Material> mineable;
+
+        ToolType(String suffix, Tag<Material> mineable) {
+            this.suffix = suffix;
+            this.mineable = mineable;
+        }
+
+        private int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    public enum Tier {
+        NONE(0), STONE(1), IRON(2), DIAMOND(3), NETHERITE(4);
+
+        private final int level;
+
+        Tier(int level) {
+            this.level = level;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+    }
+
+    private static final Material[] MATERIALS = Material.values();
+    private static final Tier[] TIERS = Tier.values();
+
+    // Tool tables, 0 in toolTypes means "not a tool", otherwise ToolType ordinal + 1
+    private final byte[] toolTypes = new byte[MATERIALS.length];
+    private final byte[] toolTiers = new byte[MATERIALS.length];
+    private final float[] toolSpeeds = new float[MATERIALS.length];
+
+    // Block tables, a bit per ToolType that mines the block and the tier needed to harvest it
+    private final byte[] blockTools = new byte[MATERIALS.length];
+    private final byte[] blockTiers = new byte[MATERIALS.length];
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private ToolRules() {
+    }
+
+    public static ToolRules compile(ConfigurationSection config) {
+        ToolRules rules = new ToolRules();
+        rules.compileTools();
+        rules.compileVanillaBlocks();
+        if (config != null) {
+            rules.applyOverrides(config);
+        }
+        return rules;
+    }
+
+    private void compileTools() {
+        for (Material material : MATERIALS) {
+            if (!material.isItem()) continue;
+            String name = material.name();
+
+            for (ToolType type : ToolType.values()) {
+                if (!name.endsWith(type.suffix)) continue;
+                // PICKAXE also ends with _AXE, the longer suffix is checked first
+                if (type == ToolType.AXE && name.endsWith("_PICKAXE")) continue;
+
+                int ordinal = material.ordinal();
+                toolTypes[ordinal] = (byte) (type.ordinal() + 1);
+                if (name.startsWith("NETHERITE_")) {
+                    toolTiers[ordinal] = (byte) Tier.NETHERITE.level;
+                    toolSpeeds[ordinal] = 9.0f;
+                } else if (name.startsWith("DIAMOND_")) {
+                    toolTiers[ordinal] = (byte) Tier.DIAMOND.level;
+                    toolSpeeds[ordinal] = 8.0f;
+                } else if (name.startsWith("IRON_")) {
+                    toolTiers[ordinal] = (byte) Tier.IRON.level;
+                    toolSpeeds[ordinal] = 6.0f;
+                } else if (name.startsWith("STONE_")) {
+                    toolTiers[ordinal] = (byte) Tier.STONE.level;
+                    toolSpeeds[ordinal] = 4.0f;
+                } else if (name.startsWith("GOLDEN_")) {
+                    toolSpeeds[ordinal] = 12.0f;
+                } else if (name.startsWith("WOODEN_")) {
+                    toolSpeeds[ordinal] = 2.0f;
+                } else {
+                    toolSpeeds[ordinal] = 1.0f;
+                }
+                break;
+            }
+        }
+    }
+
+    private void compileVanillaBlocks() {
+        for (ToolType type : ToolType.values()) {
+            for (Material block : type.mineable.getValues()) {
+                blockTools[block.ordinal()] |= (byte) type.bit();
+            }
+        }
+        for (Material block : Tag.NEEDS_STONE_TOOL.getValues()) {
+            raiseTier(block, Tier.STONE);
+        }
+        for (Material block : Tag.NEEDS_IRON_TOOL.getValues()) {
+            raiseTier(block, Tier.IRON);
+        }
+        for (Material block : Tag.NEEDS_DIAMOND_TOOL.getValues()) {
+            raiseTier(block, Tier.DIAMOND);
+        }
+    }
+
+    private void raiseTier(Material block, Tier tier) {
+        int ordinal = block.ordinal();
+        blockTiers[ordinal] = (byte) Math.max(blockTiers[ordinal], tier.level);
+    }
+
+    private void applyOverrides(ConfigurationSection config) {
+        for (ToolType type : ToolType.values()) {
+            String key = type.name().toLowerCase(Locale.ROOT);
+            for (String name : config.getStringList("add." + key)) {
+                Material block = parseBlock(name, "add." + key);
+                if (block != null) {
+                    blockTools[block.ordinal()] |= (byte) type.bit();
+                }
+            }
+            for (String name : config.getStringList("remove." + key)) {
+                Material block = parseBlock(name, "remove." + key);
+                if (block != null) {
+                    blockTools[block.ordinal()] &= (byte) ~type.bit();
+                }
+            }
+        }
+
+        ConfigurationSection tiers = config.getConfigurationSection("tiers");
+        if (tiers == null) return;
+        for (String name : tiers.getKeys(false)) {
+            Material block = parseBlock(name, "tiers");
+            if (block == null) continue;
+            String tierName = tiers.getString(name, "");
+            try {
+                blockTiers[block.ordinal()] = (byte) Tier.valueOf(tierName.toUpperCase(Locale.ROOT)).level;
+            } catch (IllegalArgumentException e) {
+                warnings.add("tiers." + name + ": unknown tier '" + tierName + "'");
+            }
+        }
+    }
+
+    private Material parseBlock(String name, String path) {
+        Material material = Material.matchMaterial(name);
+        if (material == null || !material.isBlock()) {
+            warnings.add(path + ": '" + name + "' is not a block");
+            return null;
+        }
+        return material;
+    }
+
+    public boolean isTool(Material material) {
+        return toolTypes[material.ordinal()] != 0;
+    }
+
+    public ToolType getToolType(Material tool) {
+        int type = toolTypes[tool.ordinal()];
+        return type == 0 ? null : ToolType.values()[type - 1];
+    }
+
+    public int getToolTier(Material tool) {
+        return toolTiers[tool.ordinal()];
+    }
+
+    public float getBaseBreakingSpeed(Material tool) {
+        float speed = toolSpeeds[tool.ordinal()];
+        return speed > 0 ? speed : 1.0f;
+    }
+
+    /**
+     * Whether {@code tool} is the right tool type for {@code block} and of a high enough tier to harvest it.
+     */
+    public boolean isCorrectTool(Material tool, Material block) {
+        int type = toolTypes[tool.ordinal()];
+        if (type == 0) return false;
+        int blockOrdinal = block.ordinal();
+        return (blockTools[blockOrdinal] & (1 << (type - 1))) != 0
+                && toolTiers[tool.ordinal()] >= blockTiers[blockOrdinal];
+    }
+
+    public List<String> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    /**
+     * Lists every block whose tool set or harvest tier differs between {@code previous} and this table.
+     */
+    public List<String> diff(ToolRules previous) {
+        List<String> changes = new ArrayList<>();
+        for (Material material : MATERIALS) {
+            int ordinal = material.ordinal();
+            if (previous.blockTools[ordinal] == blockTools[ordinal]
+                    && previous.blockTiers[ordinal] == blockTiers[ordinal]) continue;
+
+            changes.add(material.name() + ": "
+                    + describe(previous.blockTools[ordinal], previous.blockTiers[ordinal])
+                    + " -> " + describe(blockTools[ordinal], blockTiers[ordinal]));
+        }
+        return changes;
+    }
+
+    private static String describe(byte tools, byte tier) {
+        if (tools == 0) return "none";
+        StringBuilder builder = new StringBuilder();
+        for (ToolType type : ToolType.values()) {
+            if ((tools & type.bit()) == 0) continue;
+            if (builder.length() > 0) builder.append('/');
+            builder.append(type.name().toLowerCase(Locale.ROOT));
+        }
+        if (tier > 0) {
+            builder.append(" (").append(TIERS[tier].name().toLowerCase(Locale.ROOT)).append(')');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Size of the lookup tables, each holds one entry per material.
+     */
+    public long estimateRetainedBytes() {
+        return (long) MATERIALS.length * (Byte.BYTES * 4 + Float.BYTES) + 5 * 16;
+    }
+
+    public int countBlocks(ToolType type) {
+        int count = 0;
+        for (byte tools : blockTools) {
+            if ((tools & type.bit()) != 0) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package org.yusaki.lamdispensers;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Durability bookkeeping for one tool lease. The Unbreaking level is read once when the
+ * tool is leased, each break rolls its damage into an accumulator, and the item meta is
+ * only written back when the operation ends.
+ */
+final class ToolWear {
+    private final int maxDurability;
+    private final int unbreakingLevel;
+    private int pendingDamage;
+
+    private ToolWear(int maxDurability, int unbreakingLevel) {
+        this.maxDurability = maxDurability;
+        this.unbreakingLevel = unbreakingLevel;
+    }
+
+    static ToolWear lease(ItemStack tool) {
+        int maxDurability = tool.getType().getMaxDurability();
+        ItemMeta meta = tool.getItemMeta();
+        if (maxDurability <= 0 || (meta != null && meta.isUnbreakable())) {
+            return new ToolWear(0, 0);
+        }
+        return new ToolWear(maxDurability, tool.getEnchantmentLevel(Enchantment.DURABILITY));
+    }
+
+    /**
+     * Vanilla Unbreaking for tools: each use costs durability with a chance of 1 in (level + 1).
+     */
+    static boolean rollsDamage(int unbreakingLevel, RandomGenerator random) {
+        return unbreakingLevel <= 0 || random.nextInt(unbreakingLevel + 1) == 0;
+    }
+
+    void recordBreak() {
+        // ThreadLocalRandom keeps its state per thread, so region threads never contend on it
+        if (maxDurability > 0 && rollsDamage(unbreakingLevel, ThreadLocalRandom.current())) {
+            pendingDamage++;
+        }
+    }
+
+    /**
+     * Writes the accumulated damage back onto the leased tool in the inventory.
+     *
+     * @return true if the tool broke and was removed
+     */
+    boolean apply(Inventory inventory, ItemStack tool) {
+        if (pendingDamage == 0) return false;
+        int damage = pendingDamage;
+        pendingDamage = 0;
+
+        ItemStack[] contents = inventory.getContents();
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack item = contents[i];
+            if (item == null || !item.equals(tool)) continue;
+            if (!(item.getItemMeta() instanceof Damageable meta)) return false;
+
+            int newDamage = meta.getDamage() + damage;
+            if (newDamage >= maxDurability) {
+                inventory.setItem(i, null);
+                return true;
+            }
+            meta.setDamage(newDamage);
+            item.setItemMeta(meta);
+            inventory.setItem(i, item);
+            return false;
+        }
+        return false;
+    }
+}
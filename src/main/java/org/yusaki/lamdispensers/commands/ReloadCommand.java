@@ -29,8 +29,15 @@ public class ReloadCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        plugin.reloadPlugin();
+        List<String> changes = plugin.reloadPlugin((toolRuleChanges) -> {
+            if (!toolRuleChanges.isEmpty()) {
+                sender.sendMessage("§7 - " + toolRuleChanges.size() + " tool rule change(s)");
+            }
+        });
         sender.sendMessage("§aLamDispensers configuration reloaded!");
+        for (String change : changes) {
+            sender.sendMessage("§7 - " + change);
+        }
         return true;
     }
 
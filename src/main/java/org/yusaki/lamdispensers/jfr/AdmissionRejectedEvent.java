@@ -0,0 +1,21 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lamdispensers.AdmissionRejected")
+@Label("Admission Rejected")
+@Category({"LamDispensers", "Dispense"})
+@StackTrace(false)
+public class AdmissionRejectedEvent extends PositionedEvent {
+    @Label("Tool")
+    public String tool;
+
+    @Label("Block Type")
+    public String blockType;
+
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,23 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("lamdispensers.BlockPlaced")
+@Label("Block Placed")
+@Category({"LamDispensers", "Placement"})
+@StackTrace(false)
+public class BlockPlacedEvent extends PositionedEvent {
+    @Label("Block Type")
+    public String blockType;
+
+    @Label("Replaced Type")
+    public String replacedType;
+
+    @Label("Queue Delay")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueDelay;
+}
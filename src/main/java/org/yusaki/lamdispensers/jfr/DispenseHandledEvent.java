@@ -0,0 +1,20 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lamdispensers.DispenseHandled")
+@Label("Dispense Handled")
+@Description("A BlockDispenseEvent taken over by one of the dispenser handlers")
+@Category({"LamDispensers", "Dispense"})
+@StackTrace(false)
+public class DispenseHandledEvent extends PositionedEvent {
+    @Label("Handler")
+    public String handler;
+
+    @Label("Item")
+    public String item;
+}
@@ -0,0 +1,57 @@
+package org.yusaki.lamdispensers.jfr;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+
+/**
+ * Emit helpers for the flight recorder events. Each method bails out before
+ * touching any field when the event type is not enabled in a running recording.
+ */
+public final class DispenserEvents {
+
+    private DispenserEvents() {
+    }
+
+    public static void admissionRejected(Location location, Material tool, Material block, String reason) {
+        AdmissionRejectedEvent event = new AdmissionRejectedEvent();
+        if (!event.isEnabled()) return;
+        event.setPosition(location);
+        event.tool = tool != null ? tool.name() : null;
+        event.blockType = block != null ? block.name() : null;
+        event.reason = reason;
+        event.commit();
+    }
+
+    public static void miningStarted(Location location, Material tool, Material block, long expectedMillis) {
+        MiningStartedEvent event = new MiningStartedEvent();
+        if (!event.isEnabled()) return;
+        event.setPosition(location);
+        event.tool = tool.name();
+        event.blockType = block.name();
+        event.expectedTime = expectedMillis;
+        event.commit();
+    }
+
+    public static void miningFinished(Location location, Material tool, Material block,
+                                      boolean completed, String reason, long startNanos) {
+        MiningFinishedEvent event = new MiningFinishedEvent();
+        if (!event.isEnabled()) return;
+        event.setPosition(location);
+        event.tool = tool != null ? tool.name() : null;
+        event.blockType = block != null ? block.name() : null;
+        event.completed = completed;
+        event.reason = reason;
+        event.miningTime = startNanos > 0 ? System.nanoTime() - startNanos : 0;
+        event.commit();
+    }
+
+    public static void blockPlaced(Location location, Material type, Material replaced, long queuedAtNanos) {
+        BlockPlacedEvent event = new BlockPlacedEvent();
+        if (!event.isEnabled()) return;
+        event.setPosition(location);
+        event.blockType = type.name();
+        event.replacedType = replaced.name();
+        event.queueDelay = System.nanoTime() - queuedAtNanos;
+        event.commit();
+    }
+}
@@ -0,0 +1,84 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ad-hoc local recording of the LamDispensers events, driven by /ldperf jfr.
+ * Recordings are written to the plugin's data folder.
+ */
+public class FlightRecording {
+    private static final List<Class<? extends Event>> EVENT_TYPES = List.of(
+            DispenseHandledEvent.class,
+            AdmissionRejectedEvent.class,
+            MiningStartedEvent.class,
+            MiningFinishedEvent.class,
+            BlockPlacedEvent.class,
+            PlacementBatchEvent.class
+    );
+
+    private final File dataFolder;
+    private Recording recording;
+
+    public FlightRecording(File dataFolder) {
+        this.dataFolder = dataFolder;
+    }
+
+    public synchronized boolean isRunning() {
+        return recording != null;
+    }
+
+    public synchronized boolean start() {
+        if (recording != null) return false;
+        Recording newRecording = new Recording();
+        newRecording.setName("LamDispensers");
+        newRecording.setToDisk(true);
+        for (Class<? extends Event> type : EVENT_TYPES) {
+            newRecording.enable(type);
+        }
+        newRecording.start();
+        recording = newRecording;
+        return true;
+    }
+
+    /**
+     * Writes the current contents of the running recording without stopping it.
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) return null;
+        Path target = nextFile();
+        recording.dump(target);
+        return target;
+    }
+
+    /**
+     * Stops the recording, writes it out and releases its resources.
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) return null;
+        try {
+            recording.stop();
+            Path target = nextFile();
+            recording.dump(target);
+            return target;
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private Path nextFile() {
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        return new File(dataFolder, "lamdispensers-" + stamp + ".jfr").toPath();
+    }
+}
@@ -0,0 +1,29 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("lamdispensers.MiningFinished")
+@Label("Mining Finished")
+@Category({"LamDispensers", "Mining"})
+@StackTrace(false)
+public class MiningFinishedEvent extends PositionedEvent {
+    @Label("Tool")
+    public String tool;
+
+    @Label("Block Type")
+    public String blockType;
+
+    @Label("Completed")
+    public boolean completed;
+
+    @Label("Reason")
+    public String reason;
+
+    @Label("Mining Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long miningTime;
+}
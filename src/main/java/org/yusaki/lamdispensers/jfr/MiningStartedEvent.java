@@ -0,0 +1,23 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("lamdispensers.MiningStarted")
+@Label("Mining Started")
+@Category({"LamDispensers", "Mining"})
+@StackTrace(false)
+public class MiningStartedEvent extends PositionedEvent {
+    @Label("Tool")
+    public String tool;
+
+    @Label("Block Type")
+    public String blockType;
+
+    @Label("Expected Mining Time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long expectedTime;
+}
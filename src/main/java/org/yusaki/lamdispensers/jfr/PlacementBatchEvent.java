@@ -0,0 +1,23 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lamdispensers.PlacementBatch")
+@Label("Placement Batch")
+@Description("One region task applying every placement queued for a chunk in the same tick")
+@Category({"LamDispensers", "Placement"})
+@StackTrace(false)
+public class PlacementBatchEvent extends PositionedEvent {
+    @Label("Requested")
+    public int requested;
+
+    @Label("Placed")
+    public int placed;
+
+    @Label("Placed With Physics")
+    public int deferredPhysics;
+}
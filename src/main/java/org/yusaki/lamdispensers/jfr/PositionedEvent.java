@@ -0,0 +1,29 @@
+package org.yusaki.lamdispensers.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import org.bukkit.Location;
+
+/**
+ * Base type for all LamDispensers flight recorder events, carrying the block position they refer to.
+ */
+public abstract class PositionedEvent extends Event {
+    @Label("World")
+    public String world;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Z")
+    public int z;
+
+    public void setPosition(Location location) {
+        this.world = location.getWorld() != null ? location.getWorld().getName() : null;
+        this.x = location.getBlockX();
+        this.y = location.getBlockY();
+        this.z = location.getBlockZ();
+    }
+}
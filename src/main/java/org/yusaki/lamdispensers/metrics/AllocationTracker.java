@@ -0,0 +1,55 @@
+package org.yusaki.lamdispensers.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sums the bytes a handler allocates on the calling thread, read from the JVM's per-thread
+ * allocation counter around each handler invocation.
+ */
+public class AllocationTracker {
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final long since = System.nanoTime();
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)) return null;
+        if (!bean.isThreadAllocatedMemorySupported()) return null;
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return bean;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Returns the allocation counter of the current thread, to be handed to {@link #end(long)}.
+     */
+    public long begin() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    public void end(long start) {
+        if (THREADS == null) return;
+        bytes.add(THREADS.getCurrentThreadAllocatedBytes() - start);
+        calls.increment();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public double getBytesPerSecond() {
+        double seconds = (System.nanoTime() - since) / 1_000_000_000.0;
+        return seconds > 0 ? bytes.sum() / seconds : 0;
+    }
+}
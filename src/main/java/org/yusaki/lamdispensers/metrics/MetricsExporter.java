@@ -0,0 +1,143 @@
+package org.yusaki.lamdispensers.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Serves {@link PluginMetrics} as OpenMetrics text on localhost. Requests are handled on
+ * the exporter's own thread and only read the pre-aggregated counters.
+ */
+public class MetricsExporter {
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final PluginMetrics metrics;
+    private final Logger logger;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsExporter(PluginMetrics metrics, Logger logger) {
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    public synchronized void start(int port) {
+        if (server != null) return;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            logger.warning("Could not start metrics exporter on port " + port + ": " + e.getMessage());
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LamDispensers-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    String render() {
+        Map<String, PluginMetrics.WorldMetrics> worlds = metrics.getWorlds();
+        StringBuilder out = new StringBuilder(2048);
+
+        family(out, "lamdispensers_dispenses", "counter", "Dispense events handled by the plugin");
+        worlds.forEach((world, m) -> {
+            sample(out, "lamdispensers_dispenses_total", world, "handler", "mining", m.miningDispenses.sum());
+            sample(out, "lamdispensers_dispenses_total", world, "handler", "placement", m.placementDispenses.sum());
+        });
+
+        family(out, "lamdispensers_dispenses_rejected", "counter", "Dispenses turned away before an operation started");
+        worlds.forEach((world, m) -> m.rejected.forEach((reason, count) ->
+                sample(out, "lamdispensers_dispenses_rejected_total", world, "reason", reason, count.sum())));
+
+        family(out, "lamdispensers_active_mining_operations", "gauge", "Mining operations currently in progress");
+        worlds.forEach((world, m) -> sample(out, "lamdispensers_active_mining_operations", world, null, null, m.activeMining()));
+
+        family(out, "lamdispensers_mining_operations", "counter", "Finished mining operations");
+        worlds.forEach((world, m) -> {
+            sample(out, "lamdispensers_mining_operations_total", world, "outcome", "completed", m.miningCompleted.sum());
+            sample(out, "lamdispensers_mining_operations_total", world, "outcome", "aborted", m.miningAborted.sum());
+        });
+
+        family(out, "lamdispensers_mining_duration_seconds", "histogram", "Time from mining start to block break");
+        worlds.forEach((world, m) -> {
+            long cumulative = 0;
+            for (int i = 0; i < m.durationBuckets.length; i++) {
+                cumulative += m.durationBuckets[i].sum();
+                String le = i < PluginMetrics.DURATION_BUCKETS.length ? Double.toString(PluginMetrics.DURATION_BUCKETS[i]) : "+Inf";
+                sample(out, "lamdispensers_mining_duration_seconds_bucket", world, "le", le, cumulative);
+            }
+            sample(out, "lamdispensers_mining_duration_seconds_count", world, null, null, cumulative);
+            out.append("lamdispensers_mining_duration_seconds_sum{world=\"").append(escape(world)).append("\"} ")
+                    .append(m.durationNanos.sum() / 1_000_000_000.0).append('\n');
+        });
+
+        family(out, "lamdispensers_queued_placements", "gauge", "Placements waiting for their chunk's batch task");
+        worlds.forEach((world, m) -> sample(out, "lamdispensers_queued_placements", world, null, null, m.placementsQueued.sum()));
+
+        family(out, "lamdispensers_blocks_placed", "counter", "Blocks placed by dispensers");
+        worlds.forEach((world, m) -> sample(out, "lamdispensers_blocks_placed_total", world, null, null, m.blocksPlaced.sum()));
+
+        family(out, "lamdispensers_crops_harvested", "counter", "Crops harvested by hoe dispensers");
+        worlds.forEach((world, m) -> sample(out, "lamdispensers_crops_harvested_total", world, null, null, m.cropsHarvested.sum()));
+
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static void family(StringBuilder out, String name, String type, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String world, String label, String value, long count) {
+        out.append(name).append("{world=\"").append(escape(world)).append('"');
+        if (label != null) {
+            out.append(',').append(label).append("=\"").append(escape(value)).append('"');
+        }
+        out.append("} ").append(count).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
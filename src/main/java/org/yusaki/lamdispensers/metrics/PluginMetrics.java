@@ -0,0 +1,129 @@
+package org.yusaki.lamdispensers.metrics;
+
+import org.bukkit.Location;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-aggregated counters for the exporter. Handlers only ever add to striped
+ * {@link LongAdder}s, so recording never contends and a scrape only sums them.
+ */
+public class PluginMetrics {
+
+    /** Upper bounds in seconds of the mining duration histogram buckets, +Inf is implicit. */
+    static final double[] DURATION_BUCKETS = {0.05, 0.25, 0.5, 1, 2, 5, 10, 20};
+
+    private static final long WORLD_METRICS_BYTES = 1200;
+    private static final long REJECTION_ENTRY_BYTES = 120;
+
+    private final Map<String, WorldMetrics> worlds = new ConcurrentHashMap<>();
+    private final AllocationTracker miningAllocations = new AllocationTracker();
+    private final AllocationTracker placementAllocations = new AllocationTracker();
+
+    public AllocationTracker getMiningAllocations() {
+        return miningAllocations;
+    }
+
+    public AllocationTracker getPlacementAllocations() {
+        return placementAllocations;
+    }
+
+    public void dispenseHandled(Location location, String handler) {
+        WorldMetrics world = world(location);
+        ("mining".equals(handler) ? world.miningDispenses : world.placementDispenses).increment();
+    }
+
+    public void dispenseRejected(Location location, String reason) {
+        world(location).rejected.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    public void miningStarted(Location location) {
+        world(location).miningStarted.increment();
+    }
+
+    public void miningFinished(Location location, boolean completed, long startNanos) {
+        WorldMetrics world = world(location);
+        if (!completed) {
+            world.miningAborted.increment();
+            return;
+        }
+
+        world.miningCompleted.increment();
+        if (startNanos <= 0) return;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        int bucket = 0;
+        while (bucket < DURATION_BUCKETS.length && seconds > DURATION_BUCKETS[bucket]) {
+            bucket++;
+        }
+        world.durationBuckets[bucket].increment();
+        world.durationNanos.add(elapsedNanos);
+    }
+
+    public void placementQueued(Location location) {
+        world(location).placementsQueued.increment();
+    }
+
+    public void placementBatchApplied(Location location, int requests) {
+        world(location).placementsQueued.add(-requests);
+    }
+
+    public void blockPlaced(Location location) {
+        world(location).blocksPlaced.increment();
+    }
+
+    public void cropsHarvested(Location location, int crops) {
+        world(location).cropsHarvested.add(crops);
+    }
+
+    Map<String, WorldMetrics> getWorlds() {
+        return worlds;
+    }
+
+    public int getWorldCount() {
+        return worlds.size();
+    }
+
+    /**
+     * Rough retained size: per world about twenty striped counters plus the rejection map.
+     */
+    public long estimateRetainedBytes() {
+        long bytes = 0;
+        for (WorldMetrics world : worlds.values()) {
+            bytes += WORLD_METRICS_BYTES + world.rejected.size() * REJECTION_ENTRY_BYTES;
+        }
+        return bytes;
+    }
+
+    private WorldMetrics world(Location location) {
+        String name = location.getWorld() != null ? location.getWorld().getName() : "unknown";
+        WorldMetrics world = worlds.get(name);
+        return world != null ? world : worlds.computeIfAbsent(name, n -> new WorldMetrics());
+    }
+
+    static final class WorldMetrics {
+        final LongAdder miningDispenses = new LongAdder();
+        final LongAdder placementDispenses = new LongAdder();
+        final Map<String, LongAdder> rejected = new ConcurrentHashMap<>();
+        final LongAdder miningStarted = new LongAdder();
+        final LongAdder miningCompleted = new LongAdder();
+        final LongAdder miningAborted = new LongAdder();
+        final LongAdder[] durationBuckets = new LongAdder[DURATION_BUCKETS.length + 1];
+        final LongAdder durationNanos = new LongAdder();
+        final LongAdder placementsQueued = new LongAdder();
+        final LongAdder blocksPlaced = new LongAdder();
+        final LongAdder cropsHarvested = new LongAdder();
+
+        WorldMetrics() {
+            for (int i = 0; i < durationBuckets.length; i++) {
+                durationBuckets[i] = new LongAdder();
+            }
+        }
+
+        long activeMining() {
+            return Math.max(0, miningStarted.sum() - miningCompleted.sum() - miningAborted.sum());
+        }
+    }
+}
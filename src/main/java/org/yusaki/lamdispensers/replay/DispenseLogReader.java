@@ -0,0 +1,99 @@
+package org.yusaki.lamdispensers.replay;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a log written by {@link DispenseRecorder}, translating the recorded material
+ * ordinals through the log's own material table. Records come back in file order, which
+ * is only ordered by tick within one recording thread.
+ */
+public class DispenseLogReader {
+
+    public record Entry(long tick, int world, int x, int y, int z, BlockFace facing, Material item,
+                        int efficiencyLevel, Material target, boolean placement, DispenseRecorder.Outcome outcome) {
+    }
+
+    private final MappedByteBuffer buffer;
+    private final String[] worlds;
+    private final Material[] materials;
+    private final long recordCount;
+    private long index;
+
+    public DispenseLogReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != DispenseRecorder.MAGIC) {
+            throw new IOException("Not a LamDispensers dispense log");
+        }
+        if (buffer.getShort(4) != DispenseRecorder.VERSION || buffer.getShort(6) != DispenseRecorder.RECORD_SIZE) {
+            throw new IOException("Unsupported dispense log version " + buffer.getShort(4));
+        }
+
+        long recordsOffset = buffer.getLong(DispenseRecorder.RECORDS_OFFSET_OFFSET);
+        long available = (buffer.capacity() - recordsOffset) / DispenseRecorder.RECORD_SIZE;
+        recordCount = Math.min(buffer.getLong(DispenseRecorder.COUNT_OFFSET), available);
+
+        worlds = new String[DispenseRecorder.MAX_WORLDS];
+        for (int i = 0; i < worlds.length; i++) {
+            int slot = DispenseRecorder.HEADER_SIZE + i * DispenseRecorder.WORLD_SLOT_SIZE;
+            byte[] name = new byte[buffer.getShort(slot)];
+            buffer.get(slot + Short.BYTES, name);
+            worlds[i] = new String(name, StandardCharsets.UTF_8);
+        }
+
+        buffer.position(DispenseRecorder.HEADER_SIZE + DispenseRecorder.MAX_WORLDS * DispenseRecorder.WORLD_SLOT_SIZE);
+        materials = new Material[buffer.getInt()];
+        for (int i = 0; i < materials.length; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            materials[i] = Material.matchMaterial(new String(name, StandardCharsets.US_ASCII));
+        }
+        buffer.position((int) recordsOffset);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Name of a recorded world index, or "?" for worlds past the table's capacity.
+     */
+    public String getWorldName(int index) {
+        return index < worlds.length ? worlds[index] : "?";
+    }
+
+    public boolean hasNext() {
+        return index < recordCount;
+    }
+
+    public Entry next() {
+        index++;
+        long tick = Integer.toUnsignedLong(buffer.getInt());
+        long position = buffer.getLong();
+        Material item = material(buffer.getShort());
+        Material target = material(buffer.getShort());
+        BlockFace facing = DispenseRecorder.face(buffer.get());
+        boolean placement = buffer.get() == DispenseRecorder.HANDLER_PLACEMENT;
+        DispenseRecorder.Outcome outcome = DispenseRecorder.Outcome.of(buffer.get());
+        int world = buffer.get() & 0xFF;
+        int efficiencyLevel = buffer.get();
+        buffer.position(buffer.position() + 3);
+
+        return new Entry(tick, world, DispenseRecorder.unpackX(position), DispenseRecorder.unpackY(position),
+                DispenseRecorder.unpackZ(position), facing, item, efficiencyLevel, target, placement, outcome);
+    }
+
+    private Material material(int ordinal) {
+        return ordinal >= 0 && ordinal < materials.length ? materials[ordinal] : null;
+    }
+}
@@ -0,0 +1,334 @@
+package org.yusaki.lamdispensers.replay;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends handled dispenses to a memory-mapped binary log.
+ *
+ * <p>Layout: a header with the magic, format version, record count and the offset of the
+ * first record, a fixed table of up to {@value #MAX_WORLDS} world names, then the material
+ * names in ordinal order so a log can be read back on a server version with different
+ * ordinals. Records are fixed {@value #RECORD_SIZE} bytes: server tick (int), packed
+ * dispenser position (long), item ordinal (short), target ordinal (short), facing, handler,
+ * outcome, world index, efficiency level of the dispensed item and three reserved bytes.</p>
+ *
+ * <p>Each thread fills its own buffer and copies it into the mapping in one go, reserving
+ * its slots with a single atomic add, so region threads never wait on each other. Records
+ * are therefore grouped per thread in the file, readers order them by tick. The record
+ * count is written when recording stops.</p>
+ */
+public class DispenseRecorder {
+    static final int MAGIC = 0x4C44524C; // "LDRL"
+    static final short VERSION = 2;
+    static final int RECORD_SIZE = 24;
+    static final int COUNT_OFFSET = 8;
+    static final int RECORDS_OFFSET_OFFSET = 16;
+    static final int HEADER_SIZE = 24;
+    static final int MAX_WORLDS = 64;
+    static final int WORLD_SLOT_SIZE = 64;
+    static final int UNKNOWN_WORLD = 0xFF;
+
+    static final byte HANDLER_MINING = 0;
+    static final byte HANDLER_PLACEMENT = 1;
+
+    private static final int SEGMENT_RECORDS = (4 << 20) / RECORD_SIZE;
+    private static final long SEGMENT_SIZE = (long) SEGMENT_RECORDS * RECORD_SIZE;
+    private static final int BUFFER_RECORDS = 512;
+    private static final BlockFace[] FACES = BlockFace.values();
+
+    // Persisted by ordinal, only append
+    public enum Outcome {
+        MINING_STARTED, NO_TARGET, CHUNK_UNLOADED, TARGET_BUSY, NO_TOOL, TOOL_BUSY, PLACEMENT_QUEUED, HARVEST_STARTED,
+        HARVEST_BUSY;
+
+        private static final Outcome[] VALUES = values();
+
+        static Outcome of(int ordinal) {
+            return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+        }
+    }
+
+    private final ThreadLocal<ThreadBuffer> buffers = new ThreadLocal<>();
+    private volatile Session session;
+    private long recordCount;
+    private Path file;
+
+    public boolean isRecording() {
+        return session != null;
+    }
+
+    public synchronized Path getFile() {
+        return file;
+    }
+
+    /**
+     * Bytes currently mapped by the recorder. The mapping lives outside the heap.
+     */
+    public long getMappedBytes() {
+        Session current = session;
+        return current != null ? current.getMappedBytes() : 0;
+    }
+
+    /**
+     * Records written to the log so far. Records still in a thread's buffer count once the
+     * buffer is flushed, at the latest when recording stops.
+     */
+    public synchronized long getRecordCount() {
+        Session current = session;
+        return current != null ? current.reserved.get() : recordCount;
+    }
+
+    public synchronized void start(Path target) throws IOException {
+        if (session != null) return;
+        session = new Session(target);
+        recordCount = 0;
+        file = target;
+    }
+
+    public synchronized void stop() throws IOException {
+        Session closing = session;
+        if (closing == null) return;
+        session = null;
+        recordCount = closing.close();
+    }
+
+    public void recordMining(long tick, Block dispenser, BlockFace facing, Material item, int efficiencyLevel,
+                             Material target, Outcome outcome) {
+        append(tick, dispenser, facing, item, efficiencyLevel, target, HANDLER_MINING, outcome);
+    }
+
+    public void recordPlacement(long tick, Block dispenser, BlockFace facing, Material item, Material target,
+                                Outcome outcome) {
+        append(tick, dispenser, facing, item, 0, target, HANDLER_PLACEMENT, outcome);
+    }
+
+    private void append(long tick, Block dispenser, BlockFace facing, Material item, int efficiencyLevel,
+                        Material target, byte handler, Outcome outcome) {
+        Session current = session;
+        if (current == null) return;
+
+        ThreadBuffer buffer = buffers.get();
+        if (buffer == null || buffer.session != current) {
+            buffer = current.newBuffer();
+            buffers.set(buffer);
+        }
+        buffer.add((int) tick, packPosition(dispenser.getX(), dispenser.getY(), dispenser.getZ()),
+                (short) item.ordinal(), (short) (target != null ? target.ordinal() : -1),
+                (byte) facing.ordinal(), handler, (byte) outcome.ordinal(),
+                (byte) current.worldIndex(dispenser.getWorld()), (byte) Math.min(efficiencyLevel, 127));
+    }
+
+    /**
+     * One recording: the open file, its mapped segments and the buffers of the threads
+     * writing to it.
+     */
+    private static final class Session {
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final long recordsOffset;
+        private final AtomicLong reserved = new AtomicLong();
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private final Queue<ThreadBuffer> threadBuffers = new ConcurrentLinkedQueue<>();
+        private final Map<UUID, Integer> worlds = new ConcurrentHashMap<>();
+        private final AtomicInteger worldCount = new AtomicInteger();
+        private volatile boolean closed;
+
+        Session(Path target) throws IOException {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            byte[] materialTable = encodeMaterials();
+            int worldTable = MAX_WORLDS * WORLD_SLOT_SIZE;
+            recordsOffset = HEADER_SIZE + worldTable + materialTable.length;
+
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, recordsOffset);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) RECORD_SIZE);
+            header.putLong(COUNT_OFFSET, 0);
+            header.putLong(RECORDS_OFFSET_OFFSET, recordsOffset);
+            header.put(HEADER_SIZE + worldTable, materialTable);
+        }
+
+        ThreadBuffer newBuffer() {
+            ThreadBuffer buffer = new ThreadBuffer(this);
+            threadBuffers.add(buffer);
+            return buffer;
+        }
+
+        /**
+         * Index of the world in the header table, assigned on first use. Worlds past the
+         * table's capacity share {@link #UNKNOWN_WORLD}.
+         */
+        int worldIndex(World world) {
+            return worlds.computeIfAbsent(world.getUID(), (uid) -> {
+                int index = worldCount.getAndIncrement();
+                if (index >= MAX_WORLDS) return UNKNOWN_WORLD;
+
+                byte[] name = world.getName().getBytes(StandardCharsets.UTF_8);
+                int length = Math.min(name.length, WORLD_SLOT_SIZE - Short.BYTES);
+                int slot = HEADER_SIZE + index * WORLD_SLOT_SIZE;
+                header.put(slot + Short.BYTES, name, 0, length);
+                header.putShort(slot, (short) length);
+                return index;
+            });
+        }
+
+        void write(byte[] records, int count) throws IOException {
+            long slot = reserved.getAndAdd(count);
+            int offset = 0;
+            while (count > 0) {
+                MappedByteBuffer segment = segment((int) (slot / SEGMENT_RECORDS));
+                int index = (int) (slot % SEGMENT_RECORDS);
+                int fits = Math.min(count, SEGMENT_RECORDS - index);
+                segment.put(index * RECORD_SIZE, records, offset, fits * RECORD_SIZE);
+                slot += fits;
+                count -= fits;
+                offset += fits * RECORD_SIZE;
+            }
+        }
+
+        private MappedByteBuffer segment(int number) throws IOException {
+            synchronized (segments) {
+                while (segments.size() <= number) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                            recordsOffset + segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+                }
+                return segments.get(number);
+            }
+        }
+
+        long getMappedBytes() {
+            synchronized (segments) {
+                return recordsOffset + segments.size() * SEGMENT_SIZE;
+            }
+        }
+
+        long close() throws IOException {
+            closed = true;
+            try {
+                for (ThreadBuffer buffer : threadBuffers) {
+                    buffer.flush();
+                }
+                long count = reserved.get();
+                header.putLong(COUNT_OFFSET, count);
+                header.force();
+                synchronized (segments) {
+                    for (MappedByteBuffer segment : segments) {
+                        segment.force();
+                    }
+                }
+                try {
+                    // Cut off the unused tail of the last segment. Some platforms refuse to truncate
+                    // a mapped file, the record count in the header bounds the reader either way.
+                    channel.truncate(recordsOffset + count * RECORD_SIZE);
+                } catch (IOException ignored) {
+                }
+                return count;
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Records of one thread not copied into the mapping yet. Only its thread and
+     * {@link Session#close} touch it, so its lock is practically never contended.
+     */
+    private static final class ThreadBuffer {
+        private final Session session;
+        private final ByteBuffer records = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+
+        ThreadBuffer(Session session) {
+            this.session = session;
+        }
+
+        synchronized void add(int tick, long position, short item, short target, byte facing, byte handler,
+                              byte outcome, byte world, byte efficiency) {
+            // Checked under the lock, so a record either makes the final flush or is dropped
+            if (session.closed) return;
+
+            records.putInt(tick);
+            records.putLong(position);
+            records.putShort(item);
+            records.putShort(target);
+            records.put(facing);
+            records.put(handler);
+            records.put(outcome);
+            records.put(world);
+            records.put(efficiency);
+            records.put((byte) 0).put((byte) 0).put((byte) 0);
+            if (!records.hasRemaining()) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            int count = records.position() / RECORD_SIZE;
+            if (count == 0) return;
+            try {
+                session.write(records.array(), count);
+            } catch (IOException ignored) {
+                // A full disk loses this buffer, the rest of the log stays readable
+            }
+            records.clear();
+        }
+    }
+
+    static long packPosition(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    static BlockFace face(int ordinal) {
+        return ordinal >= 0 && ordinal < FACES.length ? FACES[ordinal] : null;
+    }
+
+    private static byte[] encodeMaterials() {
+        Material[] materials = Material.values();
+        byte[][] names = new byte[materials.length][];
+        int size = Integer.BYTES;
+        for (int i = 0; i < materials.length; i++) {
+            names[i] = materials[i].name().getBytes(StandardCharsets.US_ASCII);
+            size += Short.BYTES + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(materials.length);
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        return buffer.array();
+    }
+}
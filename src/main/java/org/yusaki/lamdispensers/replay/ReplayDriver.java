@@ -0,0 +1,164 @@
+package org.yusaki.lamdispensers.replay;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.yusaki.lamdispensers.DispenserMiningHandler;
+import org.yusaki.lamdispensers.MiningAdmission;
+import org.yusaki.lamdispensers.ToolRules;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Feeds a recorded dispense log through the admission rules of the mining and placement
+ * handlers without touching a world. The blocks in front of the dispensers are taken from
+ * the log, the operation registries are simulated: a started operation keeps its target and
+ * its dispenser's tool busy for the computed mining time. The dispensed item stands in for
+ * the dispenser's tool inventory. The result shows both throughput and how the outcomes
+ * compare to the ones recorded on the live server.
+ */
+public class ReplayDriver {
+
+    public record Result(long records, long elapsedNanos, Map<DispenseRecorder.Outcome, Long> recorded,
+                         Map<DispenseRecorder.Outcome, Long> replayed, long mismatches, double miningSeconds) {
+
+        public double recordsPerSecond() {
+            return elapsedNanos > 0 ? records * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+    }
+
+    private record TargetKey(int world, long position) {
+    }
+
+    // A null tool stands for the dispenser's crop sweep
+    private record ToolKey(int world, long dispenser, Material tool) {
+    }
+
+    private final ToolRules rules;
+    private final boolean harvestEnabled;
+    private final BiFunction<Material, Material, DispenseRecorder.Outcome> placement;
+
+    /**
+     * @param placement the placement handler's decision for an item and the block in front
+     */
+    public ReplayDriver(ToolRules rules, boolean harvestEnabled,
+                        BiFunction<Material, Material, DispenseRecorder.Outcome> placement) {
+        this.rules = rules;
+        this.harvestEnabled = harvestEnabled;
+        this.placement = placement;
+    }
+
+    public Result replay(Path file) throws IOException {
+        DispenseLogReader reader = new DispenseLogReader(file);
+        List<DispenseLogReader.Entry> entries = new ArrayList<>();
+        while (reader.hasNext()) {
+            entries.add(reader.next());
+        }
+        // Threads flush their records in blocks, the simulation needs them in server tick order
+        entries.sort(Comparator.comparingLong(DispenseLogReader.Entry::tick));
+
+        Map<DispenseRecorder.Outcome, Long> recorded = new EnumMap<>(DispenseRecorder.Outcome.class);
+        Map<DispenseRecorder.Outcome, Long> replayed = new EnumMap<>(DispenseRecorder.Outcome.class);
+        Map<TargetKey, Long> busyTargets = new HashMap<>();
+        Map<ToolKey, Long> busyTools = new HashMap<>();
+        long mismatches = 0;
+        double miningSeconds = 0;
+
+        long start = System.nanoTime();
+        for (DispenseLogReader.Entry entry : entries) {
+            DispenseRecorder.Outcome outcome = null;
+
+            // Items this server does not know have no decision to compare
+            if (entry.item() != null) {
+                if (entry.placement()) {
+                    outcome = placement.apply(entry.item(), entry.target());
+                } else {
+                    outcome = MiningAdmission.admitPulse(rules, harvestEnabled, entry.item(), entry.target());
+                    if (outcome == DispenseRecorder.Outcome.HARVEST_STARTED) {
+                        // A queued sweep runs on the next tick, until then the dispenser's further pulses are refused
+                        ToolKey sweep = toolKey(entry, null);
+                        if (isBusy(busyTools.get(sweep), entry.tick())) {
+                            outcome = DispenseRecorder.Outcome.HARVEST_BUSY;
+                        } else {
+                            busyTools.put(sweep, entry.tick() + 1);
+                        }
+                    } else if (outcome == null) {
+                        outcome = selectTool(entry, busyTargets, busyTools);
+                        if (outcome == DispenseRecorder.Outcome.MINING_STARTED) {
+                            float seconds = DispenserMiningHandler.calculateMiningSeconds(rules, entry.item(),
+                                    entry.efficiencyLevel(), entry.target());
+                            long until = entry.tick() + MiningAdmission.busyTicks(seconds);
+                            miningSeconds += seconds;
+                            busyTargets.put(targetKey(entry), until);
+                            busyTools.put(toolKey(entry, entry.item()), until);
+                        }
+                    }
+                }
+            }
+
+            if (outcome != null) {
+                replayed.merge(outcome, 1L, Long::sum);
+            }
+            if (entry.outcome() != null) {
+                recorded.merge(entry.outcome(), 1L, Long::sum);
+            }
+            if (outcome != entry.outcome()) {
+                mismatches++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new Result(entries.size(), elapsed, recorded, replayed, mismatches, miningSeconds);
+    }
+
+    private DispenseRecorder.Outcome selectTool(DispenseLogReader.Entry entry, Map<TargetKey, Long> busyTargets,
+                                                Map<ToolKey, Long> busyTools) {
+        MiningAdmission.Tools tools = new MiningAdmission.Tools() {
+            @Override
+            public int size() {
+                return 1;
+            }
+
+            @Override
+            public Material type(int slot) {
+                return entry.item();
+            }
+
+            @Override
+            public int efficiencyLevel(int slot) {
+                return entry.efficiencyLevel();
+            }
+
+            @Override
+            public int damage(int slot) {
+                return 0;
+            }
+        };
+        boolean targetBusy = isBusy(busyTargets.get(targetKey(entry)), entry.tick());
+        return MiningAdmission.selectTool(rules, entry.target(), targetBusy, tools,
+                (tool) -> isBusy(busyTools.get(toolKey(entry, tool)), entry.tick())).outcome();
+    }
+
+    private static boolean isBusy(Long until, long tick) {
+        return until != null && until > tick;
+    }
+
+    private static TargetKey targetKey(DispenseLogReader.Entry entry) {
+        BlockFace facing = entry.facing();
+        int dx = facing != null ? facing.getModX() : 0;
+        int dy = facing != null ? facing.getModY() : 0;
+        int dz = facing != null ? facing.getModZ() : 0;
+        return new TargetKey(entry.world(), DispenseRecorder.packPosition(entry.x() + dx, entry.y() + dy, entry.z() + dz));
+    }
+
+    private static ToolKey toolKey(DispenseLogReader.Entry entry, Material tool) {
+        return new ToolKey(entry.world(), DispenseRecorder.packPosition(entry.x(), entry.y(), entry.z()), tool);
+    }
+}
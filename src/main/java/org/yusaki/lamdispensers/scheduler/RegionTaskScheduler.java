@@ -0,0 +1,60 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Location;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folia backend: hands every task to the region scheduler of its location. The global
+ * region ticks once per server tick, so it keeps the server-wide tick count.
+ */
+public class RegionTaskScheduler implements TaskScheduler {
+    private final Plugin plugin;
+    private final AtomicLong tick = new AtomicLong();
+    private final ScheduledTask ticker;
+
+    public RegionTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.ticker = plugin.getServer().getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, (scheduled) -> tick.incrementAndGet(), 1, 1);
+    }
+
+    @Override
+    public void run(Location location, Runnable task) {
+        plugin.getServer().getRegionScheduler().run(plugin, location, (scheduled) -> task.run());
+    }
+
+    @Override
+    public void runDelayed(Location location, Runnable task, long delayTicks) {
+        plugin.getServer().getRegionScheduler().runDelayed(plugin, location, (scheduled) -> task.run(),
+                Math.max(1, delayTicks));
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Location location) {
+        return plugin.getServer().isOwnedByCurrentRegion(location);
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return tick.get();
+    }
+
+    @Override
+    public String getName() {
+        return "folia-region";
+    }
+
+    @Override
+    public int getPendingCount() {
+        return -1;
+    }
+
+    @Override
+    public void shutdown() {
+        // Region tasks are dropped with the plugin, only the ticker is ours to stop
+        ticker.cancel();
+    }
+}
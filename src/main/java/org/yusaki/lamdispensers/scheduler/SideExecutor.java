@@ -0,0 +1,112 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import org.bukkit.Location;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Runs work that never touches the world (reports, exports, diagnostics, replays) on
+ * virtual threads, so region threads only spend their tick on world mutation. Only a
+ * bounded number of tasks are accepted at once; past that {@link #execute} refuses and
+ * the caller has to back off instead of piling up work.
+ */
+public class SideExecutor {
+    private final TaskScheduler scheduler;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final int capacity;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SideExecutor(TaskScheduler scheduler, Logger logger, int capacity) {
+        this.scheduler = scheduler;
+        this.logger = logger;
+        this.capacity = Math.max(1, capacity);
+        this.slots = new Semaphore(this.capacity);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("LamDispensers-side-", 0).factory());
+    }
+
+    /**
+     * Runs the task off the server threads.
+     *
+     * @return false if the executor is full or shut down and the task was not accepted
+     */
+    public boolean execute(Runnable task) {
+        if (!slots.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warning("Error in background task: " + e.getMessage());
+                    e.printStackTrace();
+                } finally {
+                    slots.release();
+                    completed.increment();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Computes a value off the server threads and hands it to the consumer on the thread
+     * that owns the location, the only place it may be applied to the world.
+     *
+     * @return false if the executor is full or shut down and nothing was started
+     */
+    public <T> boolean supply(Supplier<T> work, Location location, Consumer<T> consumer) {
+        return execute(() -> {
+            T result = work.get();
+            scheduler.run(location, () -> consumer.accept(result));
+        });
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRunningCount() {
+        return capacity - slots.availablePermits();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting work and gives running tasks a few seconds to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Background tasks still running at shutdown: " + getRunningCount());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import org.bukkit.Location;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs plugin work on the thread that owns a location. Picked once at startup so the
+ * handlers never probe for Folia on the hot path.
+ */
+public interface TaskScheduler {
+
+    /**
+     * Runs the task on the thread owning the location on the next tick.
+     */
+    void run(Location location, Runnable task);
+
+    /**
+     * Runs the task on the thread owning the location after the given number of ticks.
+     */
+    void runDelayed(Location location, Runnable task, long delayTicks);
+
+    /**
+     * Whether the calling thread may touch the world at this location right now.
+     */
+    boolean isOwnedByCurrentThread(Location location);
+
+    /**
+     * Server-wide tick count since the scheduler started. Unlike a world's full time it is
+     * the same for every world and region thread, so ticks from different places compare.
+     */
+    long getCurrentTick();
+
+    String getName();
+
+    /**
+     * Number of tasks accepted but not run yet, where the backend knows it.
+     */
+    int getPendingCount();
+
+    void shutdown();
+
+    static TaskScheduler create(Plugin plugin) {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return new RegionTaskScheduler(plugin);
+        } catch (ClassNotFoundException e) {
+            return new TickBatchingScheduler(plugin);
+        }
+    }
+}
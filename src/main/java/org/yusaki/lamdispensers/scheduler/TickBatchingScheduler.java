@@ -0,0 +1,95 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import org.bukkit.Location;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Paper/Bukkit backend: everything runs on the main thread, so instead of one
+ * {@code runTaskLater} per step, tasks are bucketed by the tick they are due and a single
+ * repeating task drains each tick's bucket.
+ */
+public class TickBatchingScheduler implements TaskScheduler {
+    private final Plugin plugin;
+    // Guarded by itself, a bucket is never added to once it has been taken out
+    private final TreeMap<Long, List<Runnable>> buckets = new TreeMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final BukkitTask driver;
+    private volatile long tick;
+
+    public TickBatchingScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.driver = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drain, 1, 1);
+    }
+
+    @Override
+    public void run(Location location, Runnable task) {
+        runDelayed(location, task, 1);
+    }
+
+    @Override
+    public void runDelayed(Location location, Runnable task, long delayTicks) {
+        long due = tick + Math.max(1, delayTicks);
+        synchronized (buckets) {
+            buckets.computeIfAbsent(due, (key) -> new ArrayList<>()).add(task);
+        }
+        pending.incrementAndGet();
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Location location) {
+        return plugin.getServer().isPrimaryThread();
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return tick;
+    }
+
+    @Override
+    public String getName() {
+        return "bukkit-tick-batching";
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public void shutdown() {
+        driver.cancel();
+        synchronized (buckets) {
+            buckets.clear();
+        }
+        pending.set(0);
+    }
+
+    private void drain() {
+        long now = ++tick;
+        // Also picks up buckets for earlier ticks that were filled while the previous drain ran
+        while (true) {
+            List<Runnable> due;
+            synchronized (buckets) {
+                Map.Entry<Long, List<Runnable>> first = buckets.firstEntry();
+                if (first == null || first.getKey() > now) return;
+                due = buckets.pollFirstEntry().getValue();
+            }
+            pending.addAndGet(-due.size());
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Error in scheduled task: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
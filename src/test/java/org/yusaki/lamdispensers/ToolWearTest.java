@@ -0,0 +1,39 @@
+package org.yusaki.lamdispensers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolWearTest {
+    private static final long SEED = 0x4C414D44L;
+    private static final int ROLLS = 200_000;
+    // Five standard deviations at the widest spread, level 1 with p = 0.5
+    private static final double TOLERANCE = 5 * Math.sqrt(0.25 / ROLLS);
+
+    @Test
+    void damagesWithChanceOneInLevelPlusOne() {
+        for (int level = 0; level <= 3; level++) {
+            SplittableRandom random = new SplittableRandom(SEED + level);
+            int damaged = 0;
+            for (int i = 0; i < ROLLS; i++) {
+                if (ToolWear.rollsDamage(level, random)) {
+                    damaged++;
+                }
+            }
+
+            double expected = 1.0 / (level + 1);
+            assertEquals(expected, (double) damaged / ROLLS, TOLERANCE, "Unbreaking " + level);
+        }
+    }
+
+    @Test
+    void alwaysDamagesWithoutUnbreaking() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(ToolWear.rollsDamage(0, random));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.RegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Just enough server for the scheduler backends: repeating tasks and Folia region tasks
+ * only run when {@link #tick()} is called. Region tasks due on the same tick run in the
+ * order they were scheduled, tasks scheduled while a tick runs are due on a later tick.
+ */
+final class FakeServer {
+    private final List<Runnable> timers = new ArrayList<>();
+    private final TreeMap<Long, List<Runnable>> regionTasks = new TreeMap<>();
+    private final Plugin plugin;
+    private long tick;
+
+    FakeServer() {
+        Server server = proxy(Server.class, (method, args) -> switch (method.getName()) {
+            case "getScheduler" -> proxy(BukkitScheduler.class, this::bukkitScheduler);
+            case "getRegionScheduler" -> proxy(RegionScheduler.class, this::regionScheduler);
+            case "getGlobalRegionScheduler" -> proxy(GlobalRegionScheduler.class, this::globalScheduler);
+            case "isPrimaryThread", "isOwnedByCurrentRegion" -> true;
+            default -> null;
+        });
+        Logger logger = Logger.getLogger("FakeServer");
+        plugin = proxy(Plugin.class, (method, args) -> switch (method.getName()) {
+            case "getServer" -> server;
+            case "getLogger" -> logger;
+            case "getName" -> "LamDispensers";
+            case "isEnabled" -> true;
+            default -> null;
+        });
+    }
+
+    Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Runs one server tick: the repeating tasks first, then the region tasks due by now.
+     */
+    void tick() {
+        tick++;
+        for (Runnable timer : new ArrayList<>(timers)) {
+            timer.run();
+        }
+        while (!regionTasks.isEmpty() && regionTasks.firstKey() <= tick) {
+            for (Runnable task : regionTasks.pollFirstEntry().getValue()) {
+                task.run();
+            }
+        }
+    }
+
+    void tick(int count) {
+        for (int i = 0; i < count; i++) {
+            tick();
+        }
+    }
+
+    private Object bukkitScheduler(Method method, Object[] args) {
+        if (!method.getName().equals("runTaskTimer")) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        return repeat((Runnable) args[1]);
+    }
+
+    private Object globalScheduler(Method method, Object[] args) {
+        if (!method.getName().equals("runAtFixedRate")) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        @SuppressWarnings("unchecked")
+        Consumer<ScheduledTask> task = (Consumer<ScheduledTask>) args[1];
+        Runnable[] timer = new Runnable[1];
+        ScheduledTask scheduled = proxy(ScheduledTask.class, cancelling(() -> timers.remove(timer[0])));
+        timer[0] = () -> task.accept(scheduled);
+        timers.add(timer[0]);
+        return scheduled;
+    }
+
+    private Object regionScheduler(Method method, Object[] args) {
+        @SuppressWarnings("unchecked")
+        Consumer<ScheduledTask> task = (Consumer<ScheduledTask>) args[2];
+        long delay = switch (method.getName()) {
+            case "run" -> 1;
+            case "runDelayed" -> (long) args[3];
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+        if (delay < 1) {
+            throw new IllegalArgumentException("Folia rejects delays below one tick");
+        }
+        ScheduledTask scheduled = proxy(ScheduledTask.class, (m, a) -> null);
+        regionTasks.computeIfAbsent(tick + delay, (key) -> new ArrayList<>()).add(() -> task.accept(scheduled));
+        return scheduled;
+    }
+
+    private BukkitTask repeat(Runnable task) {
+        timers.add(task);
+        return proxy(BukkitTask.class, cancelling(() -> timers.remove(task)));
+    }
+
+    private static Handler cancelling(Runnable cancel) {
+        return (method, args) -> {
+            if (method.getName().equals("cancel")) {
+                cancel.run();
+            }
+            return null;
+        };
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        InvocationHandler invocation = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + "@fake";
+                };
+            }
+            return handler.handle(method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocation));
+    }
+}
@@ -0,0 +1,14 @@
+package org.yusaki.lamdispensers.scheduler;
+
+class RegionTaskSchedulerTest extends TaskSchedulerContract {
+
+    @Override
+    protected TaskScheduler create(FakeServer server) {
+        return new RegionTaskScheduler(server.getPlugin());
+    }
+
+    @Override
+    protected boolean countsPending() {
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+package org.yusaki.lamdispensers.scheduler;
+
+import org.bukkit.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every {@link TaskScheduler} backend has to share, run once per backend
+ * against a {@link FakeServer}.
+ */
+abstract class TaskSchedulerContract {
+    // The backends never look at the location themselves, they only pass it on
+    private static final Location LOCATION = null;
+
+    protected FakeServer server;
+    protected TaskScheduler scheduler;
+
+    protected abstract TaskScheduler create(FakeServer server);
+
+    /**
+     * Whether the backend counts its pending tasks or reports -1.
+     */
+    protected abstract boolean countsPending();
+
+    @BeforeEach
+    void setUp() {
+        server = new FakeServer();
+        scheduler = create(server);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void runsTasksInDueTickOrder() {
+        List<String> ran = new ArrayList<>();
+        scheduler.runDelayed(LOCATION, () -> ran.add("third"), 3);
+        scheduler.run(LOCATION, () -> ran.add("first"));
+        scheduler.runDelayed(LOCATION, () -> ran.add("second"), 2);
+        scheduler.runDelayed(LOCATION, () -> ran.add("third again"), 3);
+
+        server.tick(3);
+
+        assertEquals(List.of("first", "second", "third", "third again"), ran);
+    }
+
+    @Test
+    void runsTasksOnTheirDueTick() {
+        List<Long> ranAt = new ArrayList<>();
+        scheduler.runDelayed(LOCATION, () -> ranAt.add(scheduler.getCurrentTick()), 4);
+
+        server.tick(3);
+        assertTrue(ranAt.isEmpty());
+
+        server.tick();
+        assertEquals(List.of(4L), ranAt);
+    }
+
+    @Test
+    void clampsDelaysBelowOneTick() {
+        List<Long> ranAt = new ArrayList<>();
+        scheduler.runDelayed(LOCATION, () -> ranAt.add(scheduler.getCurrentTick()), 0);
+        scheduler.runDelayed(LOCATION, () -> ranAt.add(scheduler.getCurrentTick()), -5);
+
+        server.tick();
+
+        assertEquals(List.of(1L, 1L), ranAt);
+    }
+
+    @Test
+    void defersTasksAddedWhileATickDrains() {
+        List<Long> ranAt = new ArrayList<>();
+        scheduler.run(LOCATION, () -> {
+            ranAt.add(scheduler.getCurrentTick());
+            scheduler.run(LOCATION, () -> ranAt.add(scheduler.getCurrentTick()));
+            scheduler.runDelayed(LOCATION, () -> ranAt.add(scheduler.getCurrentTick()), 2);
+        });
+
+        server.tick();
+        assertEquals(List.of(1L), ranAt);
+
+        server.tick(2);
+        assertEquals(List.of(1L, 2L, 3L), ranAt);
+    }
+
+    @Test
+    void countsPendingTasks() {
+        scheduler.run(LOCATION, () -> { });
+        scheduler.runDelayed(LOCATION, () -> { }, 2);
+        scheduler.runDelayed(LOCATION, () -> { }, 5);
+
+        if (!countsPending()) {
+            assertEquals(-1, scheduler.getPendingCount());
+            return;
+        }
+        assertEquals(3, scheduler.getPendingCount());
+        server.tick();
+        assertEquals(2, scheduler.getPendingCount());
+        server.tick();
+        assertEquals(1, scheduler.getPendingCount());
+        server.tick(3);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void countsPendingTasksAddedWhileATickDrains() {
+        if (!countsPending()) return;
+
+        scheduler.run(LOCATION, () -> scheduler.runDelayed(LOCATION, () -> { }, 3));
+        server.tick();
+
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    void advancesOneTickPerServerTick() {
+        assertEquals(0, scheduler.getCurrentTick());
+        server.tick(5);
+        assertEquals(5, scheduler.getCurrentTick());
+    }
+
+    @Test
+    void stopsTickingAfterShutdown() {
+        server.tick(2);
+        scheduler.shutdown();
+        server.tick(2);
+
+        assertEquals(2, scheduler.getCurrentTick());
+    }
+}
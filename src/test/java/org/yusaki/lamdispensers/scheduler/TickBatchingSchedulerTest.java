@@ -0,0 +1,14 @@
+package org.yusaki.lamdispensers.scheduler;
+
+class TickBatchingSchedulerTest extends TaskSchedulerContract {
+
+    @Override
+    protected TaskScheduler create(FakeServer server) {
+        return new TickBatchingScheduler(server.getPlugin());
+    }
+
+    @Override
+    protected boolean countsPending() {
+        return true;
+    }
+}